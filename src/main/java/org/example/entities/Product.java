@@ -1,22 +1,41 @@
 package org.example.entities;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.LocalDateTime;
 
 public class Product {
+    private static final VarHandle RATING_AND_VERSION;
+    private static final int RATING_BITS = 4;
+    private static final long RATING_MASK = (1 << RATING_BITS) - 1;
+
+    static {
+        try {
+            RATING_AND_VERSION = MethodHandles.lookup().findVarHandle(Product.class, "ratingAndVersion", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final int id;
     private String name;
     private Category category;
-    private int rating;
     private final LocalDateTime createdDate;
-    private LocalDateTime modifiedDate;
+    private volatile LocalDateTime modifiedDate;
+    // The rating in the low bits and the version above them, so both can be compared and set in one step
+    private volatile long ratingAndVersion;
 
     public Product(int id, String name, Category category, int rating, LocalDateTime createdDate) {
+        this(id, name, category, rating, createdDate, createdDate, 0);
+    }
+
+    public Product(int id, String name, Category category, int rating, LocalDateTime createdDate, LocalDateTime modifiedDate, long version) {
         this.id = id;
         this.name = name;
         this.category = category;
-        this.rating = rating;
         this.createdDate = createdDate;
-        this.modifiedDate = createdDate;
+        this.modifiedDate = modifiedDate;
+        this.ratingAndVersion = pack(rating, version);
     }
 
     public int getId() {
@@ -29,7 +48,7 @@ public class Product {
 
     public void setName(String name) {
         this.name = name;
-        this.modifiedDate = LocalDateTime.now();
+        modified();
     }
 
     public Category getCategory() {
@@ -38,16 +57,28 @@ public class Product {
 
     public void setCategory(Category category) {
         this.category = category;
-        this.modifiedDate = LocalDateTime.now();
+        modified();
     }
 
     public int getRating() {
-        return rating;
+        return (int) (ratingAndVersion & RATING_MASK);
     }
 
     public void setRating(int rating) {
-        this.rating = rating;
+        this.ratingAndVersion = pack(rating, getVersion());
+        modified();
+    }
+
+    // Changes the rating only if the product is still at the expected version and returns the rating it replaced,
+    // or -1 when the product has been modified since; several threads may call this at once on the same product
+    public int compareAndSetRating(long expectedVersion, int rating) {
+        long current = ratingAndVersion;
+        if (current >>> RATING_BITS != expectedVersion
+                || !RATING_AND_VERSION.compareAndSet(this, current, pack(rating, expectedVersion + 1))) {
+            return -1;
+        }
         this.modifiedDate = LocalDateTime.now();
+        return (int) (current & RATING_MASK);
     }
 
     public LocalDateTime getCreatedDate() {
@@ -57,4 +88,37 @@ public class Product {
     public LocalDateTime getModifiedDate() {
         return modifiedDate;
     }
+
+    // Changes all editable fields at once, counting as a single modification
+    public void update(String name, Category category, int rating) {
+        this.name = name;
+        this.category = category;
+        this.ratingAndVersion = pack(rating, getVersion());
+        modified();
+    }
+
+    // Increases by one every time the product is modified
+    public long getVersion() {
+        return ratingAndVersion >>> RATING_BITS;
+    }
+
+    // Sets the exact state of the product as it was recorded elsewhere, e.g. on the primary of a replicated warehouse
+    public void restore(String name, Category category, int rating, LocalDateTime modifiedDate, long version) {
+        this.name = name;
+        this.category = category;
+        this.modifiedDate = modifiedDate;
+        this.ratingAndVersion = pack(rating, version);
+    }
+
+    private void modified() {
+        this.modifiedDate = LocalDateTime.now();
+        this.ratingAndVersion += 1 << RATING_BITS;
+    }
+
+    private static long pack(int rating, long version) {
+        if (rating < 0 || rating > RATING_MASK) {
+            throw new IllegalArgumentException("Product rating must be between 0 and " + RATING_MASK + ".");
+        }
+        return version << RATING_BITS | rating;
+    }
 }
\ No newline at end of file
@@ -2,5 +2,5 @@ package org.example.entities;
 
 import java.time.LocalDateTime;
 
-public record ProductRecord(int id, String name, Category category, int rating, LocalDateTime createdDate, LocalDateTime modifiedDate) {
+public record ProductRecord(int id, String name, Category category, int rating, LocalDateTime createdDate, LocalDateTime modifiedDate, long version) {
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+// BatchRunner class runs warehouse commands read from a script instead of the interactive menu.
+// Each line holds one command followed by its arguments separated by whitespace, with the product name last, e.g.
+//   add 1 ELECTRONICS 8 Gaming Laptop
+//   list-category ELECTRONICS
+// Empty lines and lines starting with # are skipped. Results are written as tab separated lines:
+// products as id, name, category, rating, created date, modified date and version, failed commands as
+// "error", line number and message. Consecutive add commands are added together as one bulk load.
+
+
+package org.example.service;
+
+import org.example.entities.Category;
+import org.example.entities.ProductRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class BatchRunner {
+    private static final int MAX_PENDING_ADDS = 10_000;
+
+    private final WarehouseService warehouseService;
+    private final Writer out;
+    private final List<ProductRecord> pendingAdds = new ArrayList<>();
+    private final List<Integer> pendingAddLines = new ArrayList<>();
+    private int errors;
+
+    public BatchRunner(WarehouseService warehouseService, Writer out) {
+        this.warehouseService = warehouseService;
+        this.out = out;
+    }
+
+    // Runs every command read from the given script and returns the number of commands that failed
+    public int run(Reader script) throws IOException {
+        BufferedReader in = script instanceof BufferedReader buffered ? buffered : new BufferedReader(script, 1 << 16);
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            try {
+                runCommand(trimmed, lineNumber);
+            } catch (IllegalArgumentException e) {
+                // Adds from earlier lines are run first so that their errors come before this one
+                flushAdds();
+                writeError(lineNumber, e.getMessage());
+            }
+        }
+        flushAdds();
+        out.flush();
+        return errors;
+    }
+
+    // Runs a single command right away instead of collecting adds into a bulk load and returns false if it failed
+    boolean runNow(String line, int lineNumber) throws IOException {
+        int errorsBefore = errors;
+        try {
+            runCommand(line.strip(), lineNumber);
+            flushAdds();
+        } catch (IllegalArgumentException e) {
+            writeError(lineNumber, e.getMessage());
+        }
+        return errors == errorsBefore;
+    }
+
+    private void runCommand(String line, int lineNumber) throws IOException {
+        String[] parts = line.split("\\s+", 2);
+        String command = parts[0];
+        String arguments = parts.length > 1 ? parts[1] : "";
+
+        if (command.equals("add")) {
+            String[] fields = split(arguments, 4);
+            LocalDateTime now = LocalDateTime.now();
+            pendingAdds.add(new ProductRecord(parseInt(fields[0]), fields[3], parseCategory(fields[1]), parseInt(fields[2]), now, now, 0));
+            pendingAddLines.add(lineNumber);
+            if (pendingAdds.size() >= MAX_PENDING_ADDS) {
+                flushAdds();
+            }
+            return;
+        }
+        flushAdds();
+
+        switch (command) {
+            case "get" -> {
+                int id = parseInt(split(arguments, 1)[0]);
+                Optional<ProductRecord> product = warehouseService.getProductById(id);
+                if (product.isPresent()) {
+                    writeProduct(product.get());
+                } else {
+                    writeError(lineNumber, "Product not found.");
+                }
+            }
+            case "update" -> {
+                String[] fields = split(arguments, 4);
+                writeUpdated(lineNumber, warehouseService.updateProduct(parseInt(fields[0]), fields[3], parseCategory(fields[1]), parseInt(fields[2])));
+            }
+            case "update-name" -> {
+                String[] fields = split(arguments, 2);
+                writeUpdated(lineNumber, warehouseService.updateProductName(parseInt(fields[0]), fields[1]));
+            }
+            case "update-category" -> {
+                String[] fields = split(arguments, 2);
+                writeUpdated(lineNumber, warehouseService.updateProductCategory(parseInt(fields[0]), parseCategory(fields[1])));
+            }
+            case "update-rating" -> {
+                String[] fields = split(arguments, 2);
+                writeUpdated(lineNumber, warehouseService.updateProductRating(parseInt(fields[0]), parseInt(fields[1])));
+            }
+            case "remove" -> writeUpdated(lineNumber, warehouseService.removeProduct(parseInt(split(arguments, 1)[0])));
+            case "list" -> writeProducts(warehouseService.getAllProducts());
+            case "list-category" -> writeProducts(warehouseService.getAllProductsByCategorySortedByProductName(parseCategory(split(arguments, 1)[0])));
+            case "list-created-after" -> writeProducts(warehouseService.getAllProductsCreatedAfterASpecificDate(parseDate(split(arguments, 1)[0])));
+            case "list-modified" -> writeProducts(warehouseService.getAllProductsThatHasBeenModifiedSinceCreation());
+            case "list-max-rating-this-month" -> writeProducts(warehouseService.getAllProductsWithMaxRatingCreatedThisMonthSortedByDate());
+            case "list-min-rating" -> {
+                String[] fields = split(arguments, 2);
+                writeProducts(warehouseService.getProductsByMinRating(parseCategory(fields[0]), parseInt(fields[1])));
+            }
+            case "categories" -> {
+                for (Category category : warehouseService.getAllCategoriesThatHasAtLeastOneProduct()) {
+                    out.write(category.name());
+                    out.write('\n');
+                }
+            }
+            case "count-category" -> {
+                Category category = parseCategory(split(arguments, 1)[0]);
+                out.write(category.name() + "\t" + warehouseService.getNumberOfProductsInCategory(category) + "\n");
+            }
+            case "count-letters" -> {
+                for (Map.Entry<Character, Long> entry : warehouseService.getNumberOfProductsStartingWithEachLetter().entrySet()) {
+                    out.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+
+    // Adds the collected add commands in one bulk load, falling back to one by one when some of them are invalid
+    private void flushAdds() throws IOException {
+        if (pendingAdds.isEmpty()) {
+            return;
+        }
+        try {
+            if (pendingAdds.size() == 1) {
+                ProductRecord product = pendingAdds.get(0);
+                warehouseService.addProduct(product.id(), product.name(), product.category(), product.rating(), product.createdDate());
+            } else {
+                warehouseService.addProducts(pendingAdds);
+            }
+        } catch (IllegalArgumentException bulkFailure) {
+            for (int i = 0; i < pendingAdds.size(); i++) {
+                ProductRecord product = pendingAdds.get(i);
+                try {
+                    warehouseService.addProduct(product.id(), product.name(), product.category(), product.rating(), product.createdDate());
+                } catch (IllegalArgumentException e) {
+                    writeError(pendingAddLines.get(i), e.getMessage());
+                }
+            }
+        }
+        pendingAdds.clear();
+        pendingAddLines.clear();
+    }
+
+    private void writeUpdated(int lineNumber, boolean updated) throws IOException {
+        if (!updated) {
+            writeError(lineNumber, "Product not found.");
+        }
+    }
+
+    private void writeProducts(Collection<ProductRecord> products) throws IOException {
+        for (ProductRecord product : products) {
+            writeProduct(product);
+        }
+    }
+
+    private void writeProduct(ProductRecord product) throws IOException {
+        out.write(Integer.toString(product.id()));
+        out.write('\t');
+        out.write(product.name().replace('\t', ' ').replace('\n', ' '));
+        out.write('\t');
+        out.write(product.category().name());
+        out.write('\t');
+        out.write(Integer.toString(product.rating()));
+        out.write('\t');
+        out.write(product.createdDate().toString());
+        out.write('\t');
+        out.write(product.modifiedDate().toString());
+        out.write('\t');
+        out.write(Long.toString(product.version()));
+        out.write('\n');
+    }
+
+    private void writeError(int lineNumber, String message) throws IOException {
+        errors++;
+        out.write("error\t" + lineNumber + "\t" + message + "\n");
+    }
+
+    private static String[] split(String arguments, int count) {
+        String[] fields = arguments.split("\\s+", count);
+        if (arguments.isEmpty() || fields.length < count) {
+            throw new IllegalArgumentException("Expected " + count + " arguments.");
+        }
+        return fields;
+    }
+
+    private static int parseInt(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + text);
+        }
+    }
+
+    private static Category parseCategory(String text) {
+        try {
+            return Category.valueOf(text.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid category: " + text);
+        }
+    }
+
+    private static LocalDateTime parseDate(String text) {
+        try {
+            return LocalDateTime.parse(text + "T00:00:00");
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid date: " + text);
+        }
+    }
+}
@@ -5,6 +5,18 @@
 package org.example.service;
 
 import org.example.entities.Category;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.Scanner;
 
@@ -12,7 +24,16 @@ public class Main {
     private static final Scanner scanner = new Scanner(System.in);
     private static final WarehouseService warehouseService = new WarehouseService();
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("server")) {
+            startServer(args.length > 1 ? Integer.parseInt(args[1]) : 8080, args.length > 2 ? args[2] : null);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("batch")) {
+            int errors = runBatch(args.length > 1 ? args[1] : "-");
+            System.exit(errors == 0 ? 0 : 1);
+        }
+
         boolean exit = false;
         while (!exit) {
             printMenu();
@@ -30,6 +51,9 @@ public class Main {
                     case 9 -> getNumberOfProductsInCategory();
                     case 10 -> getNumberOfProductsStartingWithEachLetter();
                     case 11 -> getAllProductsWithMaxRatingCreatedThisMonthSortedByDate();
+                    case 12 -> getProductsByMinRating();
+                    case 13 -> updateProductRating();
+                    case 14 -> removeProduct();
                     case 0 -> exit = true;
                     default -> System.out.println("Invalid choice. Please try again.");
                 }
@@ -39,6 +63,37 @@ public class Main {
         }
     }
 
+    // Listens on the loopback interface unless a bind address such as 0.0.0.0 is given
+    private static void startServer(int port, String bindAddress) throws IOException {
+        enableHttpNoDelay();
+        warehouseService.warmUp(2_000);
+        WarehouseServer server = bindAddress == null
+                ? new WarehouseServer(warehouseService, port)
+                : new WarehouseServer(warehouseService, new InetSocketAddress(bindAddress, port));
+        server.start();
+        System.out.println("Warehouse server listening on port " + server.getPort());
+    }
+
+    // The JDK HTTP server writes the headers and the body separately, so without this every response waits on Nagle's
+    // algorithm; the server reads the property when the first one is created, so it must be set before that
+    static void enableHttpNoDelay() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    // Runs the commands in the given file, or from standard input when the file is "-", without any prompts
+    private static int runBatch(String file) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 1 << 16);
+        try (Reader script = file.equals("-")
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+            return new BatchRunner(warehouseService, out).run(script);
+        } finally {
+            out.flush();
+        }
+    }
+
     private static void printMenu() {
         System.out.println("1. Add Product");
         System.out.println("2. Get All Products");
@@ -51,6 +106,9 @@ public class Main {
         System.out.println("9. Get Number Of Products In Category");
         System.out.println("10. Get Number Of Products Starting With Each Letter");
         System.out.println("11. Get All Products With Max Rating Created This Month Sorted By Date");
+        System.out.println("12. Get Products In Category With Minimum Rating");
+        System.out.println("13. Update Product Rating");
+        System.out.println("14. Remove Product");
         System.out.println("0. Exit");
         System.out.print("Enter your choice: ");
     }
@@ -99,6 +157,24 @@ public class Main {
         }
     }
 
+    private static void updateProductRating() {
+        int id = getProductId();
+        if (warehouseService.getProductById(id).isEmpty()) {
+            System.out.println("Product ID does not exist. Please enter a valid ID.");
+            return;
+        }
+
+        int newRating = getProductRating();
+        boolean updated = warehouseService.updateProductRating(id, newRating);
+        System.out.println("Product updated: " + updated);
+    }
+
+    private static void removeProduct() {
+        int id = getProductId();
+        boolean removed = warehouseService.removeProduct(id);
+        System.out.println(removed ? "Product removed." : "Product not found.");
+    }
+
     private static void getAllProductsByCategorySortedByProductName() {
         while (true) {
             System.out.print("Enter product category (ELECTRONICS, CLOTHING, BOOKS, TOYS): ");
@@ -181,6 +257,17 @@ public class Main {
         }
     }
 
+    private static void getProductsByMinRating() {
+        Category category = getProductCategory();
+        int minRating = getProductRating();
+        var products = warehouseService.getProductsByMinRating(category, minRating);
+        if (products.isEmpty()) {
+            System.out.println("No products found in this category with at least this rating.");
+        } else {
+            products.forEach(System.out::println);
+        }
+    }
+
     private static int getProductId() {
         while (true) {
             System.out.print("Enter product ID: ");
@@ -0,0 +1,83 @@
+// MutationLog class keeps the ordered list of changes made to a warehouse so they can be replayed on replicas.
+// Every change gets the next sequence number and records the resulting state of the product, or that it was removed.
+// Only the latest changes are kept (at least maxRetained of them); a replica that falls further behind gets a full
+// snapshot instead.
+
+
+package org.example.service;
+
+import org.example.entities.ProductRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MutationLog {
+    private final int maxRetained;
+    private final List<Entry> entries = new ArrayList<>();
+    // Sequence number of the first entry in the list
+    private long firstSequence = 1;
+    private long lastSequence;
+
+    // A change to one product; product is null when the product with removedId was removed
+    record Entry(long sequence, ProductRecord product, int removedId) {
+    }
+
+    // The state of the whole warehouse right after the change with the given sequence number
+    record Snapshot(long sequence, List<ProductRecord> products) {
+    }
+
+    public MutationLog() {
+        this(1_000_000);
+    }
+
+    public MutationLog(int maxRetained) {
+        if (maxRetained < 1) {
+            throw new IllegalArgumentException("Mutation log must retain at least one entry.");
+        }
+        this.maxRetained = maxRetained;
+    }
+
+    synchronized void appendProduct(ProductRecord product) {
+        append(new Entry(lastSequence + 1, product, 0));
+    }
+
+    synchronized void appendRemoval(int id) {
+        append(new Entry(lastSequence + 1, null, id));
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    // Method to check if every change after the given sequence number is still in the log
+    synchronized boolean isRetainedAfter(long sequence) {
+        return sequence >= firstSequence - 1 && sequence <= lastSequence;
+    }
+
+    // Method to get up to max changes after the given sequence number, waiting up to timeoutMillis for one to arrive
+    synchronized List<Entry> readAfter(long sequence, int max, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (lastSequence <= sequence) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return List.of();
+            }
+            wait(remaining);
+        }
+        int start = (int) Math.max(0, sequence + 1 - firstSequence);
+        int end = (int) Math.min(entries.size(), (long) start + max);
+        return new ArrayList<>(entries.subList(start, end));
+    }
+
+    private void append(Entry entry) {
+        entries.add(entry);
+        lastSequence = entry.sequence();
+        // Dropping old entries in large steps keeps appending O(1) on average
+        if (entries.size() >= 2L * maxRetained) {
+            int dropped = entries.size() - maxRetained;
+            entries.subList(0, dropped).clear();
+            firstSequence += dropped;
+        }
+        notifyAll();
+    }
+}
@@ -0,0 +1,51 @@
+// NameDictionary class keeps one shared copy of every distinct product name in the warehouse.
+// Each name is reference counted so that names no longer used by any product are released.
+
+
+package org.example.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class NameDictionary {
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private static final class Entry {
+        private final String name;
+        private long references;
+
+        private Entry(String name) {
+            this.name = name;
+        }
+    }
+
+    // Method to get the shared copy of a name and register one more product using it
+    String acquire(String name) {
+        return acquire(name, 1);
+    }
+
+    // Method to get the shared copy of a name and register several more products using it
+    String acquire(String name, long count) {
+        Entry entry = entries.computeIfAbsent(name, Entry::new);
+        entry.references += count;
+        return entry.name;
+    }
+
+    // Method to register that one product no longer uses a name, removing the name when nothing uses it
+    void release(String name) {
+        Entry entry = entries.get(name);
+        if (entry != null && --entry.references == 0) {
+            entries.remove(name);
+        }
+    }
+
+    // Method to forget all names
+    void clear() {
+        entries.clear();
+    }
+
+    // Method to get the number of distinct names currently stored
+    int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,79 @@
+// NameSharingBenchmark class measures how much heap sharing product names through a NameDictionary saves.
+// It builds the products of a generated catalog twice, once with every product holding its own copy of its name and
+// once with the names shared through a NameDictionary, and reports the heap each set of products retains.
+// Usage: NameSharingBenchmark [products] [names]
+
+
+package org.example.service;
+
+import org.example.entities.Product;
+import org.example.entities.ProductRecord;
+
+import java.lang.ref.Reference;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class NameSharingBenchmark {
+
+    public static void main(String[] args) {
+        int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 60_000;
+        int nameCount = args.length > 1 ? Integer.parseInt(args[1]) : 2_400;
+
+        List<ProductRecord> catalog = new WorkloadRunner(Map.of("products", Integer.toString(productCount),
+                "names", Integer.toString(nameCount))).generateCatalog();
+
+        long ownNamesBytes = retainedBytes(() -> {
+            Product[] products = new Product[catalog.size()];
+            for (int i = 0; i < products.length; i++) {
+                products[i] = toProduct(catalog.get(i), copyOf(catalog.get(i).name()));
+            }
+            return products;
+        });
+        NameDictionary names = new NameDictionary();
+        long sharedNamesBytes = retainedBytes(() -> {
+            Product[] products = new Product[catalog.size()];
+            for (int i = 0; i < products.length; i++) {
+                products[i] = toProduct(catalog.get(i), names.acquire(copyOf(catalog.get(i).name())));
+            }
+            return products;
+        });
+
+        System.out.printf("%d products, %d distinct names%n", catalog.size(), names.size());
+        System.out.printf("%-14s %12s %16s%n", "names", "heap bytes", "bytes/product");
+        System.out.printf("%-14s %12d %16.1f%n", "own copy", ownNamesBytes, (double) ownNamesBytes / catalog.size());
+        System.out.printf("%-14s %12d %16.1f%n", "shared", sharedNamesBytes, (double) sharedNamesBytes / catalog.size());
+        System.out.printf("saved %.1f%%%n", 100.0 * (ownNamesBytes - sharedNamesBytes) / ownNamesBytes);
+    }
+
+    private static Product toProduct(ProductRecord record, String name) {
+        return new Product(record.id(), name, record.category(), record.rating(), record.createdDate(),
+                record.modifiedDate(), record.version());
+    }
+
+    // A String with its own array of characters, like a name read from a request or a file
+    private static String copyOf(String name) {
+        return new String(name.toCharArray());
+    }
+
+    // Heap retained by what the builder builds, measured while it is still reachable
+    private static long retainedBytes(Supplier<Object> builder) {
+        long before = usedHeap();
+        Object built = builder.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(built);
+        return after - before;
+    }
+
+    // Heap in use after collecting garbage; a full collection does not always free everything at once, so the lowest
+    // figure over several collections is used
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 8; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,359 @@
+// ProductRecordCodec class encodes batches of ProductRecords into a compact, versioned binary form and back.
+// A batch is an int length followed by the format version, the number of records and a base epoch second. Each record
+// then holds its ID as a varint, its name as the number of leading bytes shared with the previous name plus the rest
+// of the name in UTF-8, its category ordinal and rating as one byte each, its created date as a zigzag varint offset
+// from the base, its modified date as an offset from its created date and its version as a varint.
+// Names share the most with the previous one when a batch is sorted by name.
+// One codec keeps scratch buffers between batches and must only be used by one thread at a time.
+
+
+package org.example.service;
+
+import org.example.entities.Category;
+import org.example.entities.ProductRecord;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class ProductRecordCodec {
+    public static final byte VERSION = 1;
+    // Largest batch a StreamWriter writes or a StreamReader accepts, so a corrupt length cannot ask for any amount of memory
+    public static final int MAX_BATCH_BYTES = 1 << 26;
+
+    private static final Category[] CATEGORIES = Category.values();
+    // Room for everything in a record except its name: the varints, the category and rating bytes
+    private static final int MAX_FIXED_RECORD_SIZE = 5 + 5 + 5 + 2 + 10 + 5 + 10 + 5 + 10;
+    // Every record takes at least one byte for each of its eight varints and for its category and rating
+    private static final int MIN_RECORD_SIZE = 10;
+
+    private byte[] previousName = new byte[64];
+    private int previousNameLength;
+    private byte[] currentName = new byte[64];
+    private String previousNameString;
+
+    // Method to encode a batch after the position of the given buffer; returns a larger copy when it does not fit
+    public ByteBuffer encode(List<ProductRecord> batch, ByteBuffer out) {
+        out = ensureRemaining(out, Integer.BYTES + 1 + 5 + 10);
+        int start = out.position();
+        out.putInt(0);
+        out.put(VERSION);
+        writeVarLong(out, batch.size());
+        long baseEpochSecond = batch.isEmpty() ? 0 : batch.get(0).createdDate().toEpochSecond(ZoneOffset.UTC);
+        writeVarLong(out, zigzag(baseEpochSecond));
+
+        previousNameLength = 0;
+        for (ProductRecord record : batch) {
+            int nameLength = encodeName(record.name());
+            out = ensureRemaining(out, MAX_FIXED_RECORD_SIZE + nameLength);
+            int shared = sharedPrefix(nameLength);
+
+            writeVarLong(out, Integer.toUnsignedLong(record.id()));
+            writeVarLong(out, shared);
+            writeVarLong(out, nameLength - shared);
+            out.put(currentName, shared, nameLength - shared);
+            out.put((byte) record.category().ordinal());
+            out.put((byte) record.rating());
+            long createdEpochSecond = record.createdDate().toEpochSecond(ZoneOffset.UTC);
+            writeVarLong(out, zigzag(createdEpochSecond - baseEpochSecond));
+            writeVarLong(out, record.createdDate().getNano());
+            writeVarLong(out, zigzag(record.modifiedDate().toEpochSecond(ZoneOffset.UTC) - createdEpochSecond));
+            writeVarLong(out, record.modifiedDate().getNano());
+            writeVarLong(out, zigzag(record.version()));
+
+            byte[] swap = previousName;
+            previousName = currentName;
+            currentName = swap;
+            previousNameLength = nameLength;
+        }
+        out.putInt(start, out.position() - start - Integer.BYTES);
+        return out;
+    }
+
+    // Method to decode the batch at the position of the given buffer into the given list and get how many records it had
+    // A batch that is cut short or holds impossible values is rejected with an IllegalArgumentException
+    public int decode(ByteBuffer in, List<ProductRecord> out) {
+        try {
+            return decodeBatch(in, out);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | DateTimeException e) {
+            throw new IllegalArgumentException("Corrupt ProductRecord batch: " + e.getMessage(), e);
+        }
+    }
+
+    private int decodeBatch(ByteBuffer in, List<ProductRecord> out) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Corrupt ProductRecord batch: length " + length + " does not fit in the buffer.");
+        }
+        int end = in.position() + length;
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported ProductRecord codec version: " + version);
+        }
+        long count = readVarLong(in);
+        if (count < 0 || count > in.remaining() / MIN_RECORD_SIZE) {
+            throw new IllegalArgumentException("Corrupt ProductRecord batch: " + count + " records cannot fit in the batch.");
+        }
+        long baseEpochSecond = unzigzag(readVarLong(in));
+
+        previousNameLength = 0;
+        previousNameString = null;
+        for (int i = 0; i < count; i++) {
+            long id = readVarLong(in);
+            if (id < 0 || id > 0xFFFFFFFFL) {
+                throw new IllegalArgumentException("Corrupt ProductRecord batch: ID " + id + " is out of range.");
+            }
+            long shared = readVarLong(in);
+            long suffixLength = readVarLong(in);
+            if (shared < 0 || shared > previousNameLength) {
+                throw new IllegalArgumentException("Corrupt ProductRecord batch: name prefix longer than previous name.");
+            }
+            if (suffixLength < 0 || suffixLength > in.remaining()) {
+                throw new IllegalArgumentException("Corrupt ProductRecord batch: name longer than the rest of the batch.");
+            }
+            String name;
+            if (suffixLength == 0 && shared == previousNameLength && previousNameString != null) {
+                // Same name as the previous record, so the same String can be shared
+                name = previousNameString;
+            } else {
+                int nameLength = (int) (shared + suffixLength);
+                if (previousName.length < nameLength) {
+                    byte[] grown = new byte[Math.max(nameLength, previousName.length * 2)];
+                    System.arraycopy(previousName, 0, grown, 0, (int) shared);
+                    previousName = grown;
+                }
+                in.get(previousName, (int) shared, (int) suffixLength);
+                previousNameLength = nameLength;
+                name = new String(previousName, 0, nameLength, StandardCharsets.UTF_8);
+            }
+            previousNameString = name;
+
+            int ordinal = in.get();
+            if (ordinal < 0 || ordinal >= CATEGORIES.length) {
+                throw new IllegalArgumentException("Corrupt ProductRecord batch: unknown category " + ordinal + ".");
+            }
+            Category category = CATEGORIES[ordinal];
+            int rating = in.get();
+            long createdEpochSecond = baseEpochSecond + unzigzag(readVarLong(in));
+            int createdNano = (int) readVarLong(in);
+            long modifiedEpochSecond = createdEpochSecond + unzigzag(readVarLong(in));
+            int modifiedNano = (int) readVarLong(in);
+            long recordVersion = unzigzag(readVarLong(in));
+            out.add(new ProductRecord((int) id, name, category, rating,
+                    LocalDateTime.ofEpochSecond(createdEpochSecond, createdNano, ZoneOffset.UTC),
+                    LocalDateTime.ofEpochSecond(modifiedEpochSecond, modifiedNano, ZoneOffset.UTC),
+                    recordVersion));
+        }
+        if (in.position() != end) {
+            throw new IllegalArgumentException("Corrupt ProductRecord batch: length does not match its contents.");
+        }
+        return (int) count;
+    }
+
+    // StreamWriter collects records into batches and writes each full batch to a channel
+    public static class StreamWriter implements Closeable {
+        private final WritableByteChannel channel;
+        private final int batchSize;
+        private final boolean sortByName;
+        private final ProductRecordCodec codec = new ProductRecordCodec();
+        private final List<ProductRecord> batch;
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        // When sortByName is set every batch is written sorted by name, which makes the names compress better
+        public StreamWriter(WritableByteChannel channel, int batchSize, boolean sortByName) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be at least 1.");
+            }
+            this.channel = channel;
+            this.batchSize = batchSize;
+            this.sortByName = sortByName;
+            this.batch = new ArrayList<>(batchSize);
+        }
+
+        public void write(ProductRecord record) throws IOException {
+            batch.add(record);
+            if (batch.size() == batchSize) {
+                flush();
+            }
+        }
+
+        public void flush() throws IOException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (sortByName) {
+                batch.sort(Comparator.comparing(ProductRecord::name));
+            }
+            buffer.clear();
+            buffer = codec.encode(batch, buffer);
+            buffer.flip();
+            if (buffer.remaining() > Integer.BYTES + MAX_BATCH_BYTES) {
+                throw new IllegalArgumentException("ProductRecord batch is larger than " + MAX_BATCH_BYTES + " bytes.");
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            batch.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            channel.close();
+        }
+    }
+
+    // StreamReader reads the batches written by a StreamWriter and hands out their records one at a time
+    public static class StreamReader implements Closeable {
+        private final ReadableByteChannel channel;
+        private final ProductRecordCodec codec = new ProductRecordCodec();
+        private final List<ProductRecord> batch = new ArrayList<>();
+        private final ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private int next;
+
+        public StreamReader(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        // Returns the next record, or null when the channel has no more batches
+        public ProductRecord read() throws IOException {
+            while (next == batch.size()) {
+                if (!readBatch()) {
+                    return null;
+                }
+            }
+            return batch.get(next++);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private boolean readBatch() throws IOException {
+            lengthBuffer.clear();
+            if (!readFully(lengthBuffer, true)) {
+                return false;
+            }
+            int length = lengthBuffer.getInt(0);
+            if (length < 0 || length > MAX_BATCH_BYTES) {
+                throw new IllegalArgumentException("Corrupt ProductRecord stream: batch length " + length + " is out of range.");
+            }
+            if (buffer.capacity() < Integer.BYTES + length) {
+                buffer = ByteBuffer.allocate(Integer.BYTES + length);
+            }
+            buffer.clear().limit(Integer.BYTES + length);
+            buffer.putInt(length);
+            readFully(buffer, false);
+            buffer.flip();
+            batch.clear();
+            next = 0;
+            codec.decode(buffer, batch);
+            return true;
+        }
+
+        private boolean readFully(ByteBuffer target, boolean endAllowed) throws IOException {
+            while (target.hasRemaining()) {
+                if (channel.read(target) < 0) {
+                    if (endAllowed && target.position() == 0) {
+                        return false;
+                    }
+                    throw new EOFException("ProductRecord stream ended in the middle of a batch.");
+                }
+            }
+            return true;
+        }
+    }
+
+    // Writes the name into currentName as UTF-8 and returns its length in bytes
+    private int encodeName(String name) {
+        int maxLength = name.length() * 3;
+        if (currentName.length < maxLength) {
+            currentName = new byte[Math.max(maxLength, currentName.length * 2)];
+        }
+        byte[] bytes = currentName;
+        int length = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < name.length() && Character.isLowSurrogate(name.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, name.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // An unpaired surrogate cannot be encoded, so it becomes '?' like in String.getBytes
+                bytes[length++] = '?';
+            } else {
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return length;
+    }
+
+    private int sharedPrefix(int nameLength) {
+        int limit = Math.min(nameLength, previousNameLength);
+        int shared = 0;
+        while (shared < limit && currentName[shared] == previousName[shared]) {
+            shared++;
+        }
+        return shared;
+    }
+
+    private static ByteBuffer ensureRemaining(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    private static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Corrupt ProductRecord batch: varint is too long.");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
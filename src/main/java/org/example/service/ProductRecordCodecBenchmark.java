@@ -0,0 +1,95 @@
+// ProductRecordCodecBenchmark class compares the size and speed of ProductRecordCodec with a tab separated text encoding.
+// It encodes and decodes a generated catalog sorted by name several times and reports the fastest round of each.
+// Usage: ProductRecordCodecBenchmark [products] [rounds]
+
+
+package org.example.service;
+
+import org.example.entities.Category;
+import org.example.entities.ProductRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+public class ProductRecordCodecBenchmark {
+
+    public static void main(String[] args) {
+        int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<ProductRecord> catalog = new WorkloadRunner(Map.of("products", Integer.toString(productCount))).generateCatalog();
+        List<ProductRecord> sorted = new ArrayList<>(catalog);
+        sorted.sort(Comparator.comparing(ProductRecord::name));
+        ProductRecordCodec codec = new ProductRecordCodec();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        List<ProductRecord> decoded = new ArrayList<>(sorted.size());
+        byte[] text = new byte[0];
+        List<ProductRecord> parsed = List.of();
+
+        long binaryEncodeNanos = Long.MAX_VALUE;
+        long binaryDecodeNanos = Long.MAX_VALUE;
+        long textEncodeNanos = Long.MAX_VALUE;
+        long textDecodeNanos = Long.MAX_VALUE;
+        // The first rounds warm up the JIT, so only the fastest round is reported
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            buffer.clear();
+            buffer = codec.encode(sorted, buffer);
+            binaryEncodeNanos = Math.min(binaryEncodeNanos, System.nanoTime() - start);
+
+            buffer.flip();
+            decoded.clear();
+            start = System.nanoTime();
+            codec.decode(buffer, decoded);
+            binaryDecodeNanos = Math.min(binaryDecodeNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            text = encodeText(sorted);
+            textEncodeNanos = Math.min(textEncodeNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            parsed = decodeText(text);
+            textDecodeNanos = Math.min(textDecodeNanos, System.nanoTime() - start);
+        }
+        if (!decoded.equals(sorted) || !parsed.equals(sorted)) {
+            throw new IllegalStateException("Decoded records differ from the encoded ones.");
+        }
+
+        System.out.printf("%-8s %12s %14s %14s%n", "format", "bytes", "encode rec/s", "decode rec/s");
+        System.out.printf("%-8s %12d %14.0f %14.0f%n", "binary", buffer.limit(),
+                recordsPerSecond(sorted.size(), binaryEncodeNanos), recordsPerSecond(sorted.size(), binaryDecodeNanos));
+        System.out.printf("%-8s %12d %14.0f %14.0f%n", "text", text.length,
+                recordsPerSecond(sorted.size(), textEncodeNanos), recordsPerSecond(sorted.size(), textDecodeNanos));
+    }
+
+    // Tab separated text with ISO dates, the same form BatchRunner prints products in
+    static byte[] encodeText(List<ProductRecord> records) {
+        StringBuilder text = new StringBuilder();
+        for (ProductRecord record : records) {
+            text.append(record.id()).append('\t').append(record.name()).append('\t').append(record.category()).append('\t')
+                    .append(record.rating()).append('\t').append(record.createdDate()).append('\t')
+                    .append(record.modifiedDate()).append('\t').append(record.version()).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static List<ProductRecord> decodeText(byte[] text) {
+        List<ProductRecord> records = new ArrayList<>();
+        for (String line : new String(text, StandardCharsets.UTF_8).split("\n")) {
+            String[] fields = line.split("\t");
+            records.add(new ProductRecord(Integer.parseInt(fields[0]), fields[1], Category.valueOf(fields[2]),
+                    Integer.parseInt(fields[3]), LocalDateTime.parse(fields[4]), LocalDateTime.parse(fields[5]),
+                    Long.parseLong(fields[6])));
+        }
+        return records;
+    }
+
+    private static double recordsPerSecond(long records, long nanos) {
+        return records / (nanos / 1e9);
+    }
+}
@@ -0,0 +1,422 @@
+// ProductStore class keeps the products of a warehouse in the order they were added, found by ID.
+// Without a memory budget every product stays in memory. With a budget only that many products are kept in memory and
+// the others are written to a spill file and read back when they are used again. Which products stay in memory is
+// decided by the CLOCK algorithm: every lookup marks a product, and when room is needed the clock hand goes round the
+// products in memory, clearing marks, until it finds one that has not been looked up since the hand last passed it.
+// Removed products stay in the list as tombstones until enough of them have piled up to compact the list.
+
+
+package org.example.service;
+
+import org.example.entities.Product;
+import org.example.entities.ProductRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+class ProductStore {
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 1024;
+    private static final long MIN_SPILL_BYTES_TO_COMPACT = 1 << 20;
+    private static final int APPEND_BUFFER_BYTES = 1 << 16;
+
+    private final List<Slot> slots = new ArrayList<>();
+    private final Map<Integer, Slot> slotsById = new HashMap<>();
+    private int tombstones;
+    // Products only hold on to their shared name while they are in memory
+    private final NameDictionary names;
+
+    // Everything below is only used when the store has a memory budget
+    private final Slot[] clock;
+    private int hand;
+    private int resident;
+    private final Path spillFile;
+    private FileChannel spill;
+    private long spillSize;
+    private long liveSpillBytes;
+    // Evicted products are gathered here and written to the end of the spill file together, starting at flushedSize
+    private final ByteBuffer appendBuffer;
+    private long flushedSize;
+    private final ProductRecordCodec codec = new ProductRecordCodec();
+    private final List<ProductRecord> decoded = new ArrayList<>(1);
+    private ByteBuffer buffer = ByteBuffer.allocate(256);
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // Where one product is kept: in memory, in the spill file, or both while the copy in the file is still up to date
+    private static final class Slot {
+        private final int id;
+        private Product product;
+        private long spillOffset = -1;
+        private int spillLength;
+        private boolean changed;
+        private boolean referenced;
+        private int clockIndex = -1;
+        private boolean removed;
+
+        private Slot(int id) {
+            this.id = id;
+        }
+    }
+
+    ProductStore(NameDictionary names) {
+        this.names = names;
+        this.clock = null;
+        this.spillFile = null;
+        this.appendBuffer = null;
+    }
+
+    // Keeps at most maxResidentProducts products in memory and the rest in the given file, which is replaced if it exists
+    ProductStore(NameDictionary names, Path spillFile, int maxResidentProducts) {
+        if (maxResidentProducts < 1) {
+            throw new IllegalArgumentException("At least one product must fit in memory.");
+        }
+        this.names = names;
+        this.clock = new Slot[maxResidentProducts];
+        this.spillFile = spillFile;
+        this.appendBuffer = ByteBuffer.allocate(APPEND_BUFFER_BYTES);
+        try {
+            this.spill = FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    boolean contains(int id) {
+        return slotsById.containsKey(id);
+    }
+
+    // Method to add a new product, which starts out in memory
+    void add(Product product) {
+        Slot slot = new Slot(product.getId());
+        slot.product = product;
+        slot.changed = true;
+        slots.add(slot);
+        slotsById.put(slot.id, slot);
+        admit(slot);
+    }
+
+    // Method to get a product to read, bringing it into memory if it was spilled
+    Product get(int id) {
+        Slot slot = slotsById.get(id);
+        return slot == null ? null : bringIn(slot);
+    }
+
+    // Method to get a product to change; the changed product is written to the spill file again when it is evicted
+    Product getForUpdate(int id) {
+        Slot slot = slotsById.get(id);
+        if (slot == null) {
+            return null;
+        }
+        Product product = bringIn(slot);
+        slot.changed = true;
+        return product;
+    }
+
+    // Method to read a product without bringing it into memory, so queries that read many products do not evict the
+    // products that are looked up often; a spilled product is read into a copy that must not be changed
+    Product peek(int id) {
+        Slot slot = slotsById.get(id);
+        if (slot == null) {
+            return null;
+        }
+        return slot.product != null ? slot.product : read(slot);
+    }
+
+    // Method to read every product in the order they were added without bringing spilled products into memory
+    Stream<Product> stream() {
+        return slots.stream()
+                .filter(slot -> !slot.removed)
+                .map(slot -> slot.product != null ? slot.product : read(slot));
+    }
+
+    // Method to remove a product and get it, after which its ID can be used again
+    Product remove(int id) {
+        Slot slot = slotsById.remove(id);
+        if (slot == null) {
+            return null;
+        }
+        Product product = slot.product != null ? slot.product : load(slot);
+        if (slot.clockIndex >= 0) {
+            clock[slot.clockIndex] = null;
+            resident--;
+        }
+        if (slot.spillOffset >= 0) {
+            liveSpillBytes -= slot.spillLength;
+        }
+        slot.product = null;
+        slot.removed = true;
+        tombstones++;
+        return product;
+    }
+
+    // Compacting in one pass once a quarter of the list is tombstones keeps removal O(1) on average
+    void compactIfNeeded() {
+        if (tombstones >= MIN_TOMBSTONES_TO_COMPACT && tombstones * 4 >= slots.size()) {
+            compact();
+        }
+    }
+
+    // Method to drop all removed products from the list right away
+    void compact() {
+        if (tombstones > 0) {
+            slots.removeIf(slot -> slot.removed);
+            tombstones = 0;
+        }
+    }
+
+    // Method to remove every product
+    void clear() {
+        slots.clear();
+        slotsById.clear();
+        tombstones = 0;
+        if (clock != null) {
+            Arrays.fill(clock, null);
+            hand = 0;
+            resident = 0;
+            try {
+                spill.truncate(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            spillSize = 0;
+            liveSpillBytes = 0;
+            appendBuffer.clear();
+            flushedSize = 0;
+        }
+    }
+
+    // Method to close and delete the spill file
+    void close() {
+        if (spill != null) {
+            try {
+                spill.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Without a memory budget looking up a product changes nothing, so several threads may look up products at once
+    boolean keepsAllProductsInMemory() {
+        return clock == null;
+    }
+
+    int getNumberOfTombstones() {
+        return tombstones;
+    }
+
+    int getNumberOfResidentProducts() {
+        return clock == null ? slotsById.size() : resident;
+    }
+
+    // Number of lookups through get and getForUpdate that found the product in memory
+    long getNumberOfHits() {
+        return hits;
+    }
+
+    // Number of lookups through get and getForUpdate that had to read the product from the spill file
+    long getNumberOfMisses() {
+        return misses;
+    }
+
+    long getNumberOfEvictions() {
+        return evictions;
+    }
+
+    long getSpillFileSize() {
+        return spillSize;
+    }
+
+    private Product bringIn(Slot slot) {
+        if (slot.product != null) {
+            hits++;
+            slot.referenced = true;
+            return slot.product;
+        }
+        misses++;
+        slot.product = load(slot);
+        admit(slot);
+        return slot.product;
+    }
+
+    // Makes room for the slot in the clock, evicting the first product that has not been used since the hand last passed
+    private void admit(Slot slot) {
+        if (clock == null) {
+            return;
+        }
+        while (clock[hand] != null) {
+            Slot current = clock[hand];
+            if (!current.referenced) {
+                evict(current);
+                break;
+            }
+            current.referenced = false;
+            hand = (hand + 1) % clock.length;
+        }
+        clock[hand] = slot;
+        slot.clockIndex = hand;
+        slot.referenced = true;
+        resident++;
+        hand = (hand + 1) % clock.length;
+    }
+
+    private void evict(Slot slot) {
+        Product product = slot.product;
+        if (slot.changed || slot.spillOffset < 0) {
+            write(slot, product);
+        }
+        names.release(product.getName());
+        slot.product = null;
+        slot.changed = false;
+        clock[slot.clockIndex] = null;
+        slot.clockIndex = -1;
+        resident--;
+        evictions++;
+        compactSpillFileIfNeeded();
+    }
+
+    // Appends the product to the spill file; the copy it replaces stays in the file until the file is compacted
+    private void write(Slot slot, Product product) {
+        ProductRecord record = new ProductRecord(product.getId(), product.getName(), product.getCategory(), product.getRating(),
+                product.getCreatedDate(), product.getModifiedDate(), product.getVersion());
+        buffer.clear();
+        buffer = codec.encode(List.of(record), buffer);
+        buffer.flip();
+        int length = buffer.remaining();
+        if (length > appendBuffer.remaining()) {
+            flush();
+        }
+        try {
+            if (length > appendBuffer.remaining()) {
+                writeFully(spill, buffer, spillSize);
+                flushedSize = spillSize + length;
+            } else {
+                appendBuffer.put(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (slot.spillOffset >= 0) {
+            liveSpillBytes -= slot.spillLength;
+        }
+        slot.spillOffset = spillSize;
+        slot.spillLength = length;
+        spillSize += length;
+        liveSpillBytes += length;
+    }
+
+    // Reads a spilled product into a product that holds the shared copy of its name, to be kept in memory
+    private Product load(Slot slot) {
+        ProductRecord record = readRecord(slot);
+        return new Product(record.id(), names.acquire(record.name()), record.category(), record.rating(),
+                record.createdDate(), record.modifiedDate(), record.version());
+    }
+
+    // Reads a spilled product into a short lived copy
+    private Product read(Slot slot) {
+        ProductRecord record = readRecord(slot);
+        return new Product(record.id(), record.name(), record.category(), record.rating(),
+                record.createdDate(), record.modifiedDate(), record.version());
+    }
+
+    private ProductRecord readRecord(Slot slot) {
+        if (buffer.capacity() < slot.spillLength) {
+            buffer = ByteBuffer.allocate(slot.spillLength);
+        }
+        buffer.clear().limit(slot.spillLength);
+        if (slot.spillOffset >= flushedSize) {
+            int start = (int) (slot.spillOffset - flushedSize);
+            buffer.put(appendBuffer.array(), start, slot.spillLength);
+        } else {
+            try {
+                readFully(spill, buffer, slot.spillOffset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        buffer.flip();
+        decoded.clear();
+        codec.decode(buffer, decoded);
+        return decoded.get(0);
+    }
+
+    // Writes the gathered products to the end of the spill file
+    private void flush() {
+        appendBuffer.flip();
+        try {
+            writeFully(spill, appendBuffer, flushedSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        appendBuffer.clear();
+        flushedSize = spillSize;
+    }
+
+    // Rewrites the spill file with only the latest copy of each product once most of it is copies that were replaced
+    private void compactSpillFileIfNeeded() {
+        if (spillSize < MIN_SPILL_BYTES_TO_COMPACT || spillSize < 2 * liveSpillBytes) {
+            return;
+        }
+        flush();
+        Path compacted = spillFile.resolveSibling(spillFile.getFileName() + ".compacting");
+        try {
+            long position = 0;
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                for (Slot slot : slotsById.values()) {
+                    if (slot.spillOffset < 0) {
+                        continue;
+                    }
+                    if (buffer.capacity() < slot.spillLength) {
+                        buffer = ByteBuffer.allocate(slot.spillLength);
+                    }
+                    buffer.clear().limit(slot.spillLength);
+                    readFully(spill, buffer, slot.spillOffset);
+                    buffer.flip();
+                    writeFully(out, buffer, position);
+                    slot.spillOffset = position;
+                    position += slot.spillLength;
+                }
+            }
+            spill.close();
+            Files.move(compacted, spillFile, StandardCopyOption.REPLACE_EXISTING);
+            spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            spillSize = position;
+            liveSpillBytes = position;
+            flushedSize = position;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Spill file ended before the product was read.");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+// ReplicationFrames class encodes and decodes the frames a replication primary sends to its replicas.
+// A replica starts by sending the sequence number of the last change it has applied as 8 bytes. Every frame after
+// that is an int length followed by a type byte and the primary's last sequence number, and then either a batch of
+// changes or a full snapshot of the products.
+// Lengths and counts read off the wire are checked against the bytes that are actually there before anything is
+// allocated for them, so a corrupt frame fails with an IllegalArgumentException instead of running out of memory.
+
+
+package org.example.service;
+
+import org.example.entities.Category;
+import org.example.entities.ProductRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+final class ReplicationFrames {
+    static final byte CHANGES = 1;
+    static final byte SNAPSHOT = 2;
+
+    private static final byte PRODUCT = 1;
+    private static final byte REMOVAL = 2;
+    private static final Category[] CATEGORIES = Category.values();
+    // Largest frame a primary sends or a replica accepts, room for a snapshot of a few million products
+    static final int MAX_FRAME_BYTES = 1 << 28;
+    // Smallest encoded product: ID, name length, an empty name, category, rating, two dates and version
+    private static final int MIN_PRODUCT_BYTES = 4 + 4 + 1 + 1 + 12 + 12 + 8;
+    // Smallest change: sequence number, kind and a removed ID
+    private static final int MIN_CHANGE_BYTES = 8 + 1 + 4;
+
+    // A decoded frame; for a snapshot, entries holds one entry per product, all with the snapshot's sequence number
+    record Frame(byte type, long primarySequence, long snapshotSequence, List<MutationLog.Entry> entries) {
+    }
+
+    private ReplicationFrames() {
+    }
+
+    static ByteBuffer encodeChanges(long primarySequence, List<MutationLog.Entry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entries.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(CHANGES);
+        out.writeLong(primarySequence);
+        out.writeInt(entries.size());
+        for (MutationLog.Entry entry : entries) {
+            out.writeLong(entry.sequence());
+            if (entry.product() != null) {
+                out.writeByte(PRODUCT);
+                writeProduct(out, entry.product());
+            } else {
+                out.writeByte(REMOVAL);
+                out.writeInt(entry.removedId());
+            }
+        }
+        return withLength(bytes);
+    }
+
+    static ByteBuffer encodeSnapshot(long primarySequence, MutationLog.Snapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + snapshot.products().size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(SNAPSHOT);
+        out.writeLong(primarySequence);
+        out.writeLong(snapshot.sequence());
+        out.writeInt(snapshot.products().size());
+        for (ProductRecord product : snapshot.products()) {
+            writeProduct(out, product);
+        }
+        return withLength(bytes);
+    }
+
+    static Frame decode(ByteBuffer payload) {
+        byte type = payload.get();
+        long primarySequence = payload.getLong();
+        long snapshotSequence = 0;
+        List<MutationLog.Entry> entries;
+        if (type == SNAPSHOT) {
+            snapshotSequence = payload.getLong();
+            int count = readCount(payload, MIN_PRODUCT_BYTES);
+            entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new MutationLog.Entry(snapshotSequence, readProduct(payload), 0));
+            }
+        } else if (type == CHANGES) {
+            int count = readCount(payload, MIN_CHANGE_BYTES);
+            entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long sequence = payload.getLong();
+                if (payload.get() == PRODUCT) {
+                    entries.add(new MutationLog.Entry(sequence, readProduct(payload), 0));
+                } else {
+                    entries.add(new MutationLog.Entry(sequence, null, payload.getInt()));
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown replication frame type: " + type);
+        }
+        return new Frame(type, primarySequence, snapshotSequence, entries);
+    }
+
+    // Reads the next frame without its length, reusing the given buffer when it is large enough
+    static ByteBuffer readFrame(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, length);
+        int size = length.getInt(0);
+        if (size < 0 || size > MAX_FRAME_BYTES) {
+            throw new IllegalArgumentException("Replication frame length " + size + " is out of range.");
+        }
+        ByteBuffer payload = buffer.capacity() >= size ? buffer.clear().limit(size) : ByteBuffer.allocate(size);
+        readFully(channel, payload);
+        return payload;
+    }
+
+    static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Replication connection closed.");
+            }
+        }
+        buffer.flip();
+    }
+
+    static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer withLength(ByteArrayOutputStream bytes) {
+        if (bytes.size() - Integer.BYTES > MAX_FRAME_BYTES) {
+            throw new IllegalArgumentException("Replication frame is larger than " + MAX_FRAME_BYTES + " bytes.");
+        }
+        ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+        frame.putInt(0, frame.capacity() - Integer.BYTES);
+        return frame;
+    }
+
+    private static void writeProduct(DataOutputStream out, ProductRecord product) throws IOException {
+        byte[] name = product.name().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(product.id());
+        out.writeInt(name.length);
+        out.write(name);
+        out.writeByte(product.category().ordinal());
+        out.writeByte(product.rating());
+        writeDate(out, product.createdDate());
+        writeDate(out, product.modifiedDate());
+        out.writeLong(product.version());
+    }
+
+    private static ProductRecord readProduct(ByteBuffer in) {
+        int id = in.getInt();
+        int nameLength = in.getInt();
+        if (nameLength < 0 || nameLength > in.remaining()) {
+            throw new IllegalArgumentException("Replication frame has a name length of " + nameLength + " that does not fit in the frame.");
+        }
+        byte[] name = new byte[nameLength];
+        in.get(name);
+        int ordinal = in.get();
+        if (ordinal < 0 || ordinal >= CATEGORIES.length) {
+            throw new IllegalArgumentException("Replication frame has an unknown category " + ordinal + ".");
+        }
+        Category category = CATEGORIES[ordinal];
+        int rating = in.get();
+        LocalDateTime createdDate = readDate(in);
+        LocalDateTime modifiedDate = readDate(in);
+        long version = in.getLong();
+        return new ProductRecord(id, new String(name, StandardCharsets.UTF_8), category, rating, createdDate, modifiedDate, version);
+    }
+
+    // Reads a count of entries and checks that that many entries of at least the given size fit in the rest of the frame
+    private static int readCount(ByteBuffer in, int minEntryBytes) {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / minEntryBytes) {
+            throw new IllegalArgumentException("Replication frame has " + count + " entries that cannot fit in the frame.");
+        }
+        return count;
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDateTime date) throws IOException {
+        out.writeLong(date.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(date.getNano());
+    }
+
+    private static LocalDateTime readDate(ByteBuffer in) {
+        long epochSecond = in.getLong();
+        int nano = in.getInt();
+        return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+}
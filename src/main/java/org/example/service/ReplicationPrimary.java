@@ -0,0 +1,123 @@
+// ReplicationPrimary class streams the mutation log of a warehouse to read replicas over TCP.
+// Each replica tells the primary the last change it has applied and then receives every later change in batches.
+// A replica that is so far behind that the changes it needs are no longer in the log gets a full snapshot first.
+// Replicas are not authenticated, so by default the primary only listens on the loopback address.
+
+
+package org.example.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ReplicationPrimary implements Closeable {
+    private static final int MAX_BATCH = 1024;
+    // How long a replica connection may be idle before the primary sends an empty frame with its latest sequence number
+    private static final long HEARTBEAT_MILLIS = 100;
+
+    private final WarehouseService warehouseService;
+    private final MutationLog mutationLog;
+    private final ServerSocketChannel serverChannel;
+    private final Set<SocketChannel> replicas = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+
+    public ReplicationPrimary(WarehouseService warehouseService, int port) throws IOException {
+        this(warehouseService, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    // Anyone who can connect gets every product, so only bind to an address other than loopback on a trusted network
+    public ReplicationPrimary(WarehouseService warehouseService, InetSocketAddress address) throws IOException {
+        if (warehouseService.getMutationLog() == null) {
+            throw new IllegalArgumentException("Warehouse service must be created with a mutation log to be replicated.");
+        }
+        this.warehouseService = warehouseService;
+        this.mutationLog = warehouseService.getMutationLog();
+        this.serverChannel = ServerSocketChannel.open().bind(address);
+    }
+
+    public void start() {
+        running = true;
+        Thread.ofPlatform().daemon().name("replication-accept").start(this::acceptReplicas);
+    }
+
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    public int getPort() throws IOException {
+        return getAddress().getPort();
+    }
+
+    public int getNumberOfReplicas() {
+        return replicas.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverChannel.close();
+        disconnectReplicas();
+    }
+
+    // Drops every replica connection; the replicas reconnect and continue from the last change they applied
+    void disconnectReplicas() {
+        for (SocketChannel replica : replicas) {
+            try {
+                replica.close();
+            } catch (IOException ignored) {
+                // The connection is being dropped anyway
+            }
+        }
+    }
+
+    private void acceptReplicas() {
+        while (running) {
+            try {
+                SocketChannel replica = serverChannel.accept();
+                replica.socket().setTcpNoDelay(true);
+                replicas.add(replica);
+                Thread.ofPlatform().daemon().name("replication-stream").start(() -> streamTo(replica));
+            } catch (IOException e) {
+                // Thrown when the server channel is closed; otherwise keep accepting
+            }
+        }
+    }
+
+    private void streamTo(SocketChannel replica) {
+        try (replica) {
+            ByteBuffer handshake = ByteBuffer.allocate(Long.BYTES);
+            ReplicationFrames.readFully(replica, handshake);
+            long sent = handshake.getLong();
+            while (running) {
+                if (!mutationLog.isRetainedAfter(sent)) {
+                    MutationLog.Snapshot snapshot = warehouseService.snapshotForReplication();
+                    ReplicationFrames.writeFully(replica, ReplicationFrames.encodeSnapshot(snapshot.sequence(), snapshot));
+                    sent = snapshot.sequence();
+                }
+                List<MutationLog.Entry> entries = mutationLog.readAfter(sent, MAX_BATCH, HEARTBEAT_MILLIS);
+                if (!entries.isEmpty() && entries.get(0).sequence() != sent + 1) {
+                    // The log dropped changes this replica still needed, so send a snapshot on the next round
+                    sent = -1;
+                    continue;
+                }
+                ReplicationFrames.writeFully(replica, ReplicationFrames.encodeChanges(mutationLog.getLastSequence(), entries));
+                if (!entries.isEmpty()) {
+                    sent = entries.get(entries.size() - 1).sequence();
+                }
+            }
+        } catch (IOException e) {
+            // The replica disconnected; it will resume from its last applied change when it reconnects
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            replicas.remove(replica);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+// ReplicationReplica class keeps a read-only copy of a replicated warehouse up to date.
+// It connects to a ReplicationPrimary, applies the changes the primary streams to its own WarehouseService and serves
+// reads from that copy. When the connection drops it reconnects and continues from the last change it applied.
+// When a frame cannot be read or applied the copy may be out of step with the primary, so the replica drops the
+// connection, counts the failure and asks for a full snapshot when it reconnects.
+
+
+package org.example.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+public class ReplicationReplica implements Closeable {
+    private static final long RECONNECT_DELAY_MILLIS = 100;
+
+    private final WarehouseService warehouseService = new WarehouseService();
+    private final InetSocketAddress primaryAddress;
+    private volatile long lastAppliedSequence;
+    private volatile long primarySequence;
+    private volatile int connections;
+    private volatile int snapshotsApplied;
+    private volatile int failures;
+    private volatile RuntimeException lastFailure;
+    private volatile boolean snapshotNeeded;
+    private volatile SocketChannel channel;
+    private volatile boolean running;
+    private Thread thread;
+
+    public ReplicationReplica(String primaryHost, int primaryPort) {
+        this.primaryAddress = new InetSocketAddress(primaryHost, primaryPort);
+    }
+
+    public void start() {
+        running = true;
+        thread = Thread.ofPlatform().daemon().name("replication-replica").start(this::replicate);
+    }
+
+    // The replicated warehouse; it should only be used for reads since local changes are not sent to the primary
+    public WarehouseService getWarehouseService() {
+        return warehouseService;
+    }
+
+    public long getLastAppliedSequence() {
+        return lastAppliedSequence;
+    }
+
+    // Number of changes made on the primary that this replica has not applied yet, as of the last frame received
+    public long getReplicationLag() {
+        return Math.max(0, primarySequence - lastAppliedSequence);
+    }
+
+    public boolean isConnected() {
+        SocketChannel current = channel;
+        return current != null && current.isConnected();
+    }
+
+    public int getNumberOfConnections() {
+        return connections;
+    }
+
+    public int getNumberOfSnapshotsApplied() {
+        return snapshotsApplied;
+    }
+
+    // Number of frames that could not be read or applied, each of which made the replica start over from a snapshot
+    public int getNumberOfFailures() {
+        return failures;
+    }
+
+    // The error from the last frame that could not be read or applied, or null if there has not been one
+    public RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    // True from a failed frame until the snapshot that replaces the possibly inconsistent copy has been applied
+    public boolean isFailed() {
+        return snapshotNeeded;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        SocketChannel current = channel;
+        if (current != null) {
+            current.close();
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void replicate() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        while (running) {
+            try (SocketChannel connection = SocketChannel.open(primaryAddress)) {
+                connection.socket().setTcpNoDelay(true);
+                channel = connection;
+                connections++;
+                // A sequence number before the first change makes the primary start with a snapshot
+                ByteBuffer handshake = ByteBuffer.allocate(Long.BYTES).putLong(0, snapshotNeeded ? -1 : lastAppliedSequence);
+                ReplicationFrames.writeFully(connection, handshake);
+                while (running) {
+                    ByteBuffer payload = ReplicationFrames.readFrame(connection, buffer);
+                    if (payload.capacity() > buffer.capacity()) {
+                        buffer = payload;
+                    }
+                    apply(ReplicationFrames.decode(payload));
+                }
+            } catch (IOException e) {
+                // The connection dropped; reconnect below
+            } catch (RuntimeException e) {
+                failures++;
+                lastFailure = e;
+                snapshotNeeded = true;
+            }
+            channel = null;
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void apply(ReplicationFrames.Frame frame) {
+        primarySequence = frame.primarySequence();
+        List<MutationLog.Entry> entries = frame.entries();
+        if (frame.type() == ReplicationFrames.SNAPSHOT) {
+            warehouseService.applyReplicatedSnapshot(entries.stream().map(MutationLog.Entry::product).toList());
+            lastAppliedSequence = frame.snapshotSequence();
+            snapshotsApplied++;
+            snapshotNeeded = false;
+        } else if (!entries.isEmpty()) {
+            warehouseService.applyReplicatedChanges(entries);
+            lastAppliedSequence = entries.get(entries.size() - 1).sequence();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+// TieredStorageBenchmark class measures a warehouse that keeps only part of its products in memory.
+// It loads a generated catalog into warehouses with smaller and smaller memory budgets, then runs the same Zipfian mix
+// of lookups and rating updates on each one and reports the hit ratio, the p50 and p99 latencies and the spill file size.
+// Usage: TieredStorageBenchmark [products] [operations] [skew]
+
+
+package org.example.service;
+
+import org.example.entities.ProductRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+public class TieredStorageBenchmark {
+    private static final int[] BUDGET_PERCENTAGES = {100, 50, 25, 10, 5, 1};
+    private static final int UPDATE_PERCENTAGE = 20;
+
+    public static void main(String[] args) {
+        int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        double skew = args.length > 2 ? Double.parseDouble(args[2]) : 0.99;
+
+        List<ProductRecord> catalog = new WorkloadRunner(Map.of("products", Integer.toString(productCount))).generateCatalog();
+        int[] ids = popularityOrder(catalog);
+        ZipfianGenerator zipfian = new ZipfianGenerator(ids.length, skew);
+
+        System.out.printf("%-8s %10s %9s %11s %11s %11s %11s %12s%n", "budget", "resident", "hit %",
+                "get p50 ns", "get p99 ns", "upd p50 ns", "upd p99 ns", "spill bytes");
+        for (int percentage : BUDGET_PERCENTAGES) {
+            int budget = Math.max(1, (int) ((long) catalog.size() * percentage / 100));
+            Path spillFile = createSpillFile();
+            Warehouse warehouse = new Warehouse(spillFile, budget);
+            try {
+                warehouse.addProducts(catalog);
+                // The first pass warms up the JIT and the clock, so only the second pass is reported
+                run(warehouse, ids, zipfian, operations);
+                long hits = warehouse.getNumberOfHits();
+                long misses = warehouse.getNumberOfMisses();
+                long[][] latencies = run(warehouse, ids, zipfian, operations);
+                double hitRatio = 100.0 * (warehouse.getNumberOfHits() - hits)
+                        / (warehouse.getNumberOfHits() - hits + warehouse.getNumberOfMisses() - misses);
+                System.out.printf("%-8s %10d %9.2f %11d %11d %11d %11d %12d%n", percentage + "%",
+                        warehouse.getNumberOfResidentProducts(), hitRatio,
+                        percentile(latencies[0], 50), percentile(latencies[0], 99),
+                        percentile(latencies[1], 50), percentile(latencies[1], 99), warehouse.getSpillFileSize());
+            } finally {
+                warehouse.close();
+            }
+        }
+    }
+
+    // Returns the latencies of the lookups and of the updates, each sorted
+    private static long[][] run(Warehouse warehouse, int[] ids, ZipfianGenerator zipfian, int operations) {
+        SplittableRandom random = new SplittableRandom(42);
+        long[] gets = new long[operations];
+        long[] updates = new long[operations];
+        int getCount = 0;
+        int updateCount = 0;
+        for (int i = 0; i < operations; i++) {
+            int id = ids[(int) zipfian.next(random)];
+            if (random.nextInt(100) < UPDATE_PERCENTAGE) {
+                int rating = 1 + random.nextInt(10);
+                long start = System.nanoTime();
+                warehouse.updateProductRating(id, rating);
+                updates[updateCount++] = System.nanoTime() - start;
+            } else {
+                long start = System.nanoTime();
+                warehouse.getProductById(id);
+                gets[getCount++] = System.nanoTime() - start;
+            }
+        }
+        long[] sortedGets = Arrays.copyOf(gets, getCount);
+        long[] sortedUpdates = Arrays.copyOf(updates, updateCount);
+        Arrays.sort(sortedGets);
+        Arrays.sort(sortedUpdates);
+        return new long[][]{sortedGets, sortedUpdates};
+    }
+
+    // Shuffles the IDs so the popular products are spread over the catalog instead of being the ones loaded last
+    private static int[] popularityOrder(List<ProductRecord> catalog) {
+        int[] ids = catalog.stream().mapToInt(ProductRecord::id).toArray();
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        return ids;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) ((long) sorted.length * percentile / 100))];
+    }
+
+    private static Path createSpillFile() {
+        try {
+            return Files.createTempFile("warehouse-spill", ".bin");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
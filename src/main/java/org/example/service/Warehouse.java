@@ -1,5 +1,7 @@
 // Warehouse class concerns the business logic of the application.
 // It contains a list of products and provides methods to add, update and retrieve products.
+// The products can all be kept in memory, or only the most used ones within a memory budget with the rest spilled to
+// a file on disk. The counts and the rating buckets always stay in memory, so counting never reads the disk.
 // It uses the Product, ProductRecord and Category classes to represent products and categories.
 
 
@@ -8,23 +10,82 @@ package org.example.service;
 import org.example.entities.Product;
 import org.example.entities.ProductRecord;
 import org.example.entities.Category;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import java.util.stream.Collectors;
 
 public class Warehouse {
-    private final List<Product> products = new ArrayList<>();
+    private static final int MIN_RATING = 1;
+    private static final int MAX_RATING = 10;
+
+    // Products share one copy of each distinct name instead of keeping their own
+    private final NameDictionary names = new NameDictionary();
+    private final ProductStore store;
+    // One bucket per rating, each ordered by created date and then ID so rating driven queries only read the buckets they need
+    // The buckets hold the category of each product, so filtering them by category never reads a spilled product
+    // Skip lists, so compareAndSetProductRatingConcurrently can move products between buckets from several threads
+    private final List<ConcurrentNavigableMap<BucketKey, Category>> productsByRating = new ArrayList<>();
+    // Counts kept up to date on every change so the aggregate queries never scan the products
+    private final Map<Category, Long> productCountByCategory = new EnumMap<>(Category.class);
+    private final Map<Character, Long> productCountByFirstLetter = new HashMap<>();
+
+    public Warehouse() {
+        this.store = new ProductStore(names);
+        createRatingBuckets();
+    }
+
+    // Keeps at most maxResidentProducts products in memory and spills the others to the given file, which is replaced
+    // if it exists and deleted on close; each product left on disk still keeps about 150 bytes of index in memory
+    public Warehouse(Path spillFile, int maxResidentProducts) {
+        this.store = new ProductStore(names, spillFile, maxResidentProducts);
+        createRatingBuckets();
+    }
+
+    private void createRatingBuckets() {
+        for (int rating = MIN_RATING; rating <= MAX_RATING; rating++) {
+            productsByRating.add(new ConcurrentSkipListMap<>());
+        }
+    }
 
     // Method to validate a product
     public void validateProduct(String name, int rating) {
+        validateProductName(name);
+        validateProductRating(rating);
+    }
+
+    // Method to validate a product name
+    public void validateProductName(String name) {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Product name cannot be empty.");
         }
-        if (rating < 1 || rating > 10) {
+    }
+
+    // Method to validate a product rating
+    public void validateProductRating(int rating) {
+        if (rating < MIN_RATING || rating > MAX_RATING) {
             throw new IllegalArgumentException("Product rating must be between 1 and 10.");
         }
     }
 
+    // Method to validate a product category
+    public void validateProductCategory(Category category) {
+        if (category == null) {
+            throw new IllegalArgumentException("Product category cannot be empty.");
+        }
+    }
+
+    // Method to validate a product created date
+    public void validateProductCreatedDate(LocalDateTime createdDate) {
+        if (createdDate == null) {
+            throw new IllegalArgumentException("Product created date cannot be empty.");
+        }
+    }
+
     // Method to validate product ID
     public void validateProductId(int id) {
         if (id <= 0) {
@@ -34,7 +95,7 @@ public class Warehouse {
 
     // Method to check if product ID already exists
     public void checkIfProductIdExists(int id) {
-        if (products.stream().anyMatch(p -> p.getId() == id)) {
+        if (store.contains(id)) {
             throw new IllegalArgumentException("Product ID already exists.");
         }
     }
@@ -43,94 +104,295 @@ public class Warehouse {
     public void addProduct(int id, String name, Category category, int rating, LocalDateTime createdDate) {
         validateProductId(id);
         validateProduct(name, rating);
+        validateProductCategory(category);
+        validateProductCreatedDate(createdDate);
         checkIfProductIdExists(id);
-        Product product = new Product(id, name, category, rating, createdDate);
-        products.add(product);
+        Product product = new Product(id, names.acquire(name), category, rating, createdDate);
+        store.add(product);
+        addToRatingBucket(product);
+        addToCounts(product);
+    }
+
+    // Method to add many products at once, e.g. when loading an existing catalog on startup
+    // All products are validated before anything is added; validation, counting and the rating buckets are spread over all cores
+    public void addProducts(Collection<ProductRecord> productRecords) {
+        productRecords.parallelStream().forEach(r -> {
+            validateProductId(r.id());
+            validateProduct(r.name(), r.rating());
+            validateProductCategory(r.category());
+            validateProductCreatedDate(r.createdDate());
+            if (r.modifiedDate() == null) {
+                throw new IllegalArgumentException("Product modified date cannot be empty.");
+            }
+        });
+        long distinctIds = productRecords.parallelStream().mapToInt(ProductRecord::id).distinct().count();
+        if (distinctIds != productRecords.size() || productRecords.parallelStream().anyMatch(r -> store.contains(r.id()))) {
+            throw new IllegalArgumentException("Product ID already exists.");
+        }
+
+        Map<String, Long> nameCounts = productRecords.parallelStream()
+                .collect(Collectors.groupingByConcurrent(ProductRecord::name, Collectors.counting()));
+        Map<String, String> sharedNames = new HashMap<>();
+        nameCounts.forEach((name, count) -> sharedNames.put(name, names.acquire(name, count)));
+
+        Product[] loaded = productRecords.parallelStream()
+                .map(r -> new Product(r.id(), sharedNames.get(r.name()), r.category(), r.rating(), r.createdDate(), r.modifiedDate(), r.version()))
+                .toArray(Product[]::new);
+        for (Product product : loaded) {
+            store.add(product);
+        }
+
+        // The products go into the store one at a time, but each rating bucket is built on its own thread. An empty
+        // bucket is built in linear time from its products sorted by key; a bucket that already has products gets
+        // them one put at a time, which needs no sort
+        List<List<Product>> loadedByRating = new ArrayList<>();
+        for (int rating = MIN_RATING; rating <= MAX_RATING; rating++) {
+            loadedByRating.add(new ArrayList<>());
+        }
+        for (Product product : loaded) {
+            loadedByRating.get(product.getRating() - MIN_RATING).add(product);
+        }
+        IntStream.rangeClosed(MIN_RATING, MAX_RATING).parallel().forEach(rating -> {
+            List<Product> sameRating = loadedByRating.get(rating - MIN_RATING);
+            if (!ratingBucket(rating).isEmpty()) {
+                sameRating.forEach(this::addToRatingBucket);
+                return;
+            }
+            sameRating.sort(Comparator.comparing(Product::getCreatedDate).thenComparingInt(Product::getId));
+            BucketKey[] keys = new BucketKey[sameRating.size()];
+            Category[] categories = new Category[sameRating.size()];
+            for (int i = 0; i < keys.length; i++) {
+                Product product = sameRating.get(i);
+                keys[i] = new BucketKey(product.getCreatedDate(), product.getId());
+                categories[i] = product.getCategory();
+            }
+            productsByRating.set(rating - MIN_RATING, new ConcurrentSkipListMap<>(new SortedRun(keys, categories)));
+        });
+
+        Arrays.stream(loaded).parallel()
+                .collect(Collectors.groupingByConcurrent(Product::getCategory, Collectors.counting()))
+                .forEach((category, count) -> productCountByCategory.merge(category, count, Long::sum));
+        Arrays.stream(loaded).parallel()
+                .collect(Collectors.groupingByConcurrent(p -> p.getName().charAt(0), Collectors.counting()))
+                .forEach((letter, count) -> productCountByFirstLetter.merge(letter, count, Long::sum));
     }
 
     // Method to get all products
     public List<ProductRecord> getAllProducts() {
-        List<ProductRecord> productRecords = products.stream()
-                .map(p -> new ProductRecord(p.getId(), p.getName(), p.getCategory(), p.getRating(), p.getCreatedDate(), p.getModifiedDate()))
+        List<ProductRecord> productRecords = store.stream()
+                .map(Warehouse::toRecord)
                 .collect(Collectors.toList());
         return Collections.unmodifiableList(productRecords);
     }
 
     // Method to get a product by ID
     public Optional<ProductRecord> getProductById(int id) {
-        return products.stream()
-                .filter(p -> p.getId() == id)
-                .map(p -> new ProductRecord(p.getId(), p.getName(), p.getCategory(), p.getRating(), p.getCreatedDate(), p.getModifiedDate()))
-                .findFirst();
+        Product product = store.get(id);
+        return product == null ? Optional.empty() : Optional.of(toRecord(product));
     }
 
     // Method to update a product
     public boolean updateProduct(int id, String newName, Category newCategory, int newRating) {
         validateProductId(id);
         validateProduct(newName, newRating);
-        Optional<Product> productOpt = products.stream()
-                .filter(p -> p.getId() == id)
-                .findFirst();
+        validateProductCategory(newCategory);
+        Product product = store.getForUpdate(id);
+        if (product == null) {
+            return false;
+        }
+        int oldRating = product.getRating();
+        removeFromCounts(product);
+        String oldName = product.getName();
+        product.update(names.acquire(newName), newCategory, newRating);
+        names.release(oldName);
+        updateRatingBucket(product, oldRating);
+        addToCounts(product);
+        return true;
+    }
+
+    // Method to update only the name of a product
+    public boolean updateProductName(int id, String newName) {
+        validateProductId(id);
+        validateProductName(newName);
+        Product product = store.getForUpdate(id);
+        if (product == null) {
+            return false;
+        }
+        String oldName = product.getName();
+        if (!oldName.equals(newName)) {
+            removeFromCounts(product);
+            product.setName(names.acquire(newName));
+            names.release(oldName);
+            addToCounts(product);
+        } else {
+            product.setName(oldName);
+        }
+        return true;
+    }
 
-        if (productOpt.isPresent()) {
-            Product product = productOpt.get();
-            product.setName(newName);
+    // Method to update only the category of a product
+    public boolean updateProductCategory(int id, Category newCategory) {
+        validateProductId(id);
+        validateProductCategory(newCategory);
+        Product product = store.getForUpdate(id);
+        if (product == null) {
+            return false;
+        }
+        if (product.getCategory() != newCategory) {
+            removeFromCounts(product);
             product.setCategory(newCategory);
-            product.setRating(newRating);
-            return true;
+            addToRatingBucket(product);
+            addToCounts(product);
         } else {
+            product.setCategory(newCategory);
+        }
+        return true;
+    }
+
+    // Method to update only the rating of a product
+    public boolean updateProductRating(int id, int newRating) {
+        validateProductId(id);
+        validateProductRating(newRating);
+        Product product = store.getForUpdate(id);
+        if (product == null) {
+            return false;
+        }
+        setRating(product, newRating);
+        return true;
+    }
+
+    // Method to update the rating of a product only if nobody has modified the product since the caller read the given version
+    public boolean compareAndSetProductRating(int id, long expectedVersion, int newRating) {
+        validateProductId(id);
+        validateProductRating(newRating);
+        Product product = store.getForUpdate(id);
+        if (product == null || product.getVersion() != expectedVersion) {
+            return false;
+        }
+        setRating(product, newRating);
+        return true;
+    }
+
+    // Method to compare and set a rating like compareAndSetProductRating from several threads at once; safe only while
+    // no other method runs and every product is kept in memory. Losers of a race return false without waiting. A winner
+    // moves the bucket entry from the rating it replaced to the rating the product has now, and passes the product to
+    // changed, holding only the lock of that product, so a later winner's move can never be undone by an earlier one
+    boolean compareAndSetProductRatingConcurrently(int id, long expectedVersion, int newRating, Consumer<ProductRecord> changed) {
+        validateProductId(id);
+        validateProductRating(newRating);
+        Product product = store.peek(id);
+        if (product == null) {
             return false;
         }
+        int oldRating = product.compareAndSetRating(expectedVersion, newRating);
+        if (oldRating < 0) {
+            return false;
+        }
+        synchronized (product) {
+            updateRatingBucket(product, oldRating);
+            if (changed != null) {
+                changed.accept(toRecord(product));
+            }
+        }
+        return true;
+    }
+
+    // Method to check if every product is kept in memory, which compareAndSetProductRatingConcurrently needs
+    boolean keepsAllProductsInMemory() {
+        return store.keepsAllProductsInMemory();
+    }
+
+    // Method to change only the given fields of a product as one modification; fields that are null are left as they are
+    // When an expected version is given the product is only changed if nobody has modified it since the caller read that version
+    public boolean patchProduct(int id, Long expectedVersion, String newName, Category newCategory, Integer newRating) {
+        validateProductId(id);
+        if (newName != null) {
+            validateProductName(newName);
+        }
+        if (newRating != null) {
+            validateProductRating(newRating);
+        }
+        Product product = store.get(id);
+        if (product == null || (expectedVersion != null && product.getVersion() != expectedVersion)) {
+            return false;
+        }
+        if (newName == null && newCategory == null && newRating == null) {
+            return true;
+        }
+        return updateProduct(id, newName != null ? newName : product.getName(),
+                newCategory != null ? newCategory : product.getCategory(),
+                newRating != null ? newRating : product.getRating());
+    }
+
+    // Method to remove a product, after which its ID can be used again
+    public boolean removeProduct(int id) {
+        validateProductId(id);
+        boolean removed = remove(id);
+        compactIfNeeded();
+        return removed;
+    }
+
+    // Method to remove several products at once and get how many of them existed
+    public int removeProducts(Collection<Integer> ids) {
+        ids.forEach(this::validateProductId);
+        int removed = 0;
+        for (int id : ids) {
+            if (remove(id)) {
+                removed++;
+            }
+        }
+        compactIfNeeded();
+        return removed;
+    }
+
+    // Method to drop all removed products from the product list right away
+    public void compact() {
+        store.compact();
     }
 
     // Method to get all products by category sorted by product name
     public List<ProductRecord> getAllProductsByCategorySortedByProductName(Category category) {
-        List<ProductRecord> productRecords = products.stream()
+        List<ProductRecord> productRecords = store.stream()
                 .filter(p -> p.getCategory().equals(category))
                 .sorted(Comparator.comparing(Product::getName))
-                .map(p -> new ProductRecord(p.getId(), p.getName(), p.getCategory(), p.getRating(), p.getCreatedDate(), p.getModifiedDate()))
+                .map(Warehouse::toRecord)
                 .collect(Collectors.toList());
         return Collections.unmodifiableList(productRecords);
     }
 
     // Method to get all products created after a specific date
     public List<ProductRecord> getAllProductsCreatedAfterASpecificDate(LocalDateTime date) {
-        List<ProductRecord> productRecords = products.stream()
+        List<ProductRecord> productRecords = store.stream()
                 .filter(p -> p.getCreatedDate().isAfter(date))
-                .map(p -> new ProductRecord(p.getId(), p.getName(), p.getCategory(), p.getRating(), p.getCreatedDate(), p.getModifiedDate()))
+                .map(Warehouse::toRecord)
                 .collect(Collectors.toList());
         return Collections.unmodifiableList(productRecords);
     }
 
     // Method to get all products that have been modified since creation
     public List<ProductRecord> getAllProductsThatHasBeenModifiedSinceCreation() {
-        List<ProductRecord> productRecords = products.stream()
+        List<ProductRecord> productRecords = store.stream()
                 .filter(p -> p.getModifiedDate().isAfter(p.getCreatedDate()))
-                .map(p -> new ProductRecord(p.getId(), p.getName(), p.getCategory(), p.getRating(), p.getCreatedDate(), p.getModifiedDate()))
+                .map(Warehouse::toRecord)
                 .collect(Collectors.toList());
         return Collections.unmodifiableList(productRecords);
     }
 
     // Method to get all Categories that has at least one product
     public Set<Category> getAllCategoriesThatHasAtLeastOneProduct() {
-        Set<Category> categories = products.stream()
-                .map(Product::getCategory)
-                .collect(Collectors.toSet());
+        Set<Category> categories = EnumSet.noneOf(Category.class);
+        categories.addAll(productCountByCategory.keySet());
         return Collections.unmodifiableSet(categories);
     }
 
     // Method to get how many products there are in given category
     public long getNumberOfProductsInCategory(Category category) {
-        return products.stream()
-                .filter(p -> p.getCategory().equals(category))
-                .count();
+        return productCountByCategory.getOrDefault(category, 0L);
     }
 
     // Method to get a Map that contains all the letters that product name start with as key and the number of products that start with that letter as value
     public Map<Character, Long> getNumberOfProductsStartingWithEachLetter() {
-        Map<Character, Long> productsStartingWithEachLetter = products.stream()
-                .collect(Collectors.groupingBy(p -> p.getName().charAt(0), Collectors.counting()));
-        return Collections.unmodifiableMap(productsStartingWithEachLetter);
+        return Collections.unmodifiableMap(new HashMap<>(productCountByFirstLetter));
     }
 
     // Method to get all products with max rating, created this month and sorted by date with the latest first
@@ -138,11 +400,245 @@ public class Warehouse {
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime startOfMonth = now.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
         LocalDateTime endOfMonth = now.withDayOfMonth(now.toLocalDate().lengthOfMonth()).withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-        List<ProductRecord> productRecords = products.stream()
-                .filter(p -> p.getRating() == 10 && p.getCreatedDate().isAfter(startOfMonth) && p.getCreatedDate().isBefore(endOfMonth))
-                .sorted(Comparator.comparing(Product::getCreatedDate).reversed())
-                .map(p -> new ProductRecord(p.getId(), p.getName(), p.getCategory(), p.getRating(), p.getCreatedDate(), p.getModifiedDate()))
+        List<ProductRecord> productRecords = ratingBucket(MAX_RATING)
+                .subMap(new BucketKey(startOfMonth, Integer.MAX_VALUE), false, new BucketKey(endOfMonth, Integer.MIN_VALUE), false)
+                .descendingKeySet().stream()
+                .map(key -> toRecord(store.peek(key.id())))
                 .collect(Collectors.toList());
         return Collections.unmodifiableList(productRecords);
     }
-}
\ No newline at end of file
+
+    // Method to get all products in given category with at least the given rating, sorted by rating and then by date with the highest and latest first
+    public List<ProductRecord> getProductsByMinRating(Category category, int minRating) {
+        if (minRating < MIN_RATING || minRating > MAX_RATING) {
+            throw new IllegalArgumentException("Minimum rating must be between 1 and 10.");
+        }
+        List<ProductRecord> productRecords = new ArrayList<>();
+        for (int rating = MAX_RATING; rating >= minRating; rating--) {
+            for (Map.Entry<BucketKey, Category> entry : ratingBucket(rating).descendingMap().entrySet()) {
+                if (entry.getValue().equals(category)) {
+                    productRecords.add(toRecord(store.peek(entry.getKey().id())));
+                }
+            }
+        }
+        return Collections.unmodifiableList(productRecords);
+    }
+
+    // Method to get the number of distinct product names stored in the warehouse
+    int getNumberOfDistinctNames() {
+        return names.size();
+    }
+
+    // Method to set a product to exactly the given state, adding it if it does not exist
+    void restoreProduct(ProductRecord record) {
+        validateProductRating(record.rating());
+        Product product = store.getForUpdate(record.id());
+        if (product == null) {
+            product = new Product(record.id(), names.acquire(record.name()), record.category(), record.rating(),
+                    record.createdDate(), record.modifiedDate(), record.version());
+            store.add(product);
+            addToRatingBucket(product);
+            addToCounts(product);
+            return;
+        }
+        int oldRating = product.getRating();
+        removeFromCounts(product);
+        String oldName = product.getName();
+        product.restore(names.acquire(record.name()), record.category(), record.rating(), record.modifiedDate(), record.version());
+        names.release(oldName);
+        updateRatingBucket(product, oldRating);
+        addToCounts(product);
+    }
+
+    // Method to remove every product
+    void clear() {
+        store.clear();
+        productsByRating.forEach(Map::clear);
+        names.clear();
+        productCountByCategory.clear();
+        productCountByFirstLetter.clear();
+    }
+
+    // Method to close and delete the spill file of a warehouse with a memory budget
+    public void close() {
+        store.close();
+    }
+
+    // Method to get the number of removed products still waiting to be dropped from the product list
+    int getNumberOfTombstones() {
+        return store.getNumberOfTombstones();
+    }
+
+    // Method to get the number of products kept in memory
+    int getNumberOfResidentProducts() {
+        return store.getNumberOfResidentProducts();
+    }
+
+    // Method to get how many product lookups found the product in memory
+    long getNumberOfHits() {
+        return store.getNumberOfHits();
+    }
+
+    // Method to get how many product lookups had to read the product from the spill file
+    long getNumberOfMisses() {
+        return store.getNumberOfMisses();
+    }
+
+    // Method to get how many products have been moved out of memory to make room for others
+    long getNumberOfEvictions() {
+        return store.getNumberOfEvictions();
+    }
+
+    // Method to get the size in bytes of the spill file
+    long getSpillFileSize() {
+        return store.getSpillFileSize();
+    }
+
+    private boolean remove(int id) {
+        Product product = store.remove(id);
+        if (product == null) {
+            return false;
+        }
+        removeFromRatingBucket(product);
+        removeFromCounts(product);
+        names.release(product.getName());
+        return true;
+    }
+
+    private void compactIfNeeded() {
+        store.compactIfNeeded();
+    }
+
+    private static ProductRecord toRecord(Product p) {
+        return new ProductRecord(p.getId(), p.getName(), p.getCategory(), p.getRating(), p.getCreatedDate(), p.getModifiedDate(), p.getVersion());
+    }
+
+    private void setRating(Product product, int newRating) {
+        int oldRating = product.getRating();
+        product.setRating(newRating);
+        if (oldRating != newRating) {
+            updateRatingBucket(product, oldRating);
+        }
+    }
+
+    private void addToCounts(Product product) {
+        productCountByCategory.merge(product.getCategory(), 1L, Long::sum);
+        productCountByFirstLetter.merge(product.getName().charAt(0), 1L, Long::sum);
+    }
+
+    private void removeFromCounts(Product product) {
+        productCountByCategory.computeIfPresent(product.getCategory(), (category, count) -> count == 1 ? null : count - 1);
+        productCountByFirstLetter.computeIfPresent(product.getName().charAt(0), (letter, count) -> count == 1 ? null : count - 1);
+    }
+
+    private ConcurrentNavigableMap<BucketKey, Category> ratingBucket(int rating) {
+        return productsByRating.get(rating - MIN_RATING);
+    }
+
+    private void addToRatingBucket(Product product) {
+        ratingBucket(product.getRating()).put(new BucketKey(product.getCreatedDate(), product.getId()), product.getCategory());
+    }
+
+    private void removeFromRatingBucket(Product product) {
+        ratingBucket(product.getRating()).remove(new BucketKey(product.getCreatedDate(), product.getId()));
+    }
+
+    // Moves the product from the bucket of its old rating to the bucket of its current one and stores its current
+    // category there; the same key finds the old entry and becomes the new one, so a change allocates a single key
+    private void updateRatingBucket(Product product, int oldRating) {
+        BucketKey key = new BucketKey(product.getCreatedDate(), product.getId());
+        if (oldRating != product.getRating()) {
+            ratingBucket(oldRating).remove(key);
+        }
+        ratingBucket(product.getRating()).put(key, product.getCategory());
+    }
+
+    // Keys already sorted in bucket order with the category of each, read once by the constructor of a new bucket,
+    // which builds itself in linear time from a sorted map instead of putting the keys one at a time
+    private static final class SortedRun extends AbstractMap<BucketKey, Category> implements SortedMap<BucketKey, Category> {
+        private final BucketKey[] keys;
+        private final Category[] categories;
+
+        private SortedRun(BucketKey[] keys, Category[] categories) {
+            this.keys = keys;
+            this.categories = categories;
+        }
+
+        @Override
+        public Comparator<? super BucketKey> comparator() {
+            return null;
+        }
+
+        @Override
+        public Set<Entry<BucketKey, Category>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<BucketKey, Category>> iterator() {
+                    return new Iterator<>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < keys.length;
+                        }
+
+                        @Override
+                        public Entry<BucketKey, Category> next() {
+                            if (next == keys.length) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<BucketKey, Category> entry = Map.entry(keys[next], categories[next]);
+                            next++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.length;
+                }
+            };
+        }
+
+        @Override
+        public BucketKey firstKey() {
+            if (keys.length == 0) {
+                throw new NoSuchElementException();
+            }
+            return keys[0];
+        }
+
+        @Override
+        public BucketKey lastKey() {
+            if (keys.length == 0) {
+                throw new NoSuchElementException();
+            }
+            return keys[keys.length - 1];
+        }
+
+        @Override
+        public SortedMap<BucketKey, Category> subMap(BucketKey fromKey, BucketKey toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<BucketKey, Category> headMap(BucketKey toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<BucketKey, Category> tailMap(BucketKey fromKey) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // Products created at the same time are told apart by their ID, so each one has its own place in a bucket
+    private record BucketKey(LocalDateTime createdDate, int id) implements Comparable<BucketKey> {
+        @Override
+        public int compareTo(BucketKey other) {
+            int byDate = createdDate.compareTo(other.createdDate);
+            return byDate != 0 ? byDate : Integer.compare(id, other.id);
+        }
+    }
+}
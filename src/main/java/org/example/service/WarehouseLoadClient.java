@@ -0,0 +1,159 @@
+// WarehouseLoadClient class is a load test for WarehouseServer.
+// It fills the warehouse through the batch endpoint and then sends product lookups from a growing number of
+// concurrent clients, reporting throughput and latency percentiles for each concurrency level.
+// Loading stops at the first batch that fails. A lookup that does not answer 200 is counted as an error and left out
+// of the throughput and latencies.
+// Usage: WarehouseLoadClient [baseUrl] [products] [secondsPerLevel]. Without a baseUrl a local server is started.
+
+
+package org.example.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class WarehouseLoadClient {
+    private static final int[] CONCURRENCY_LEVELS = {1, 4, 16, 64, 256};
+    private static final int BATCH_SIZE = 10_000;
+
+    // Latencies in nanoseconds of the lookups that succeeded, and how many failed
+    private record WorkerResult(long[] latencies, int errors) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 && !args[0].equals("-") ? args[0] : null;
+        int productCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int secondsPerLevel = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        WarehouseServer localServer = null;
+        if (baseUrl == null) {
+            Main.enableHttpNoDelay();
+            WarehouseService warehouseService = new WarehouseService();
+            warehouseService.warmUp(2_000);
+            localServer = new WarehouseServer(warehouseService, 0);
+            localServer.start();
+            baseUrl = "http://localhost:" + localServer.getPort();
+        }
+
+        try {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            int firstId = loadProducts(client, baseUrl, productCount);
+            System.out.printf("%-12s %14s %10s %10s %10s %10s %8s%n", "concurrency", "requests/s", "p50 us", "p99 us", "p99.9 us", "max us", "errors");
+            for (int concurrency : CONCURRENCY_LEVELS) {
+                runLevel(client, baseUrl, firstId, productCount, concurrency, secondsPerLevel);
+            }
+        } finally {
+            if (localServer != null) {
+                localServer.stop();
+            }
+        }
+    }
+
+    // Adds the products in batches with IDs above any already in the warehouse and returns the first ID used
+    private static int loadProducts(HttpClient client, String baseUrl, int productCount) throws IOException, InterruptedException {
+        int firstId = (int) (System.currentTimeMillis() / 1000 % 1_000_000) * 1000 + 1;
+        String[] categories = {"ELECTRONICS", "CLOTHING", "BOOKS", "TOYS"};
+        for (int start = 0; start < productCount; start += BATCH_SIZE) {
+            StringBuilder body = new StringBuilder();
+            for (int i = start; i < Math.min(start + BATCH_SIZE, productCount); i++) {
+                body.append("op=add&id=").append(firstId + i)
+                        .append("&name=Product+").append(i % 5_000)
+                        .append("&category=").append(categories[i % categories.length])
+                        .append("&rating=").append(1 + i % 10)
+                        .append('\n');
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/batch"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            // The batch endpoint answers 200 and reports the operations that failed in the body
+            if (response.statusCode() != 200 || response.body().contains("\"error\"")) {
+                throw new IOException("Loading products from ID " + (firstId + start) + " failed with status "
+                        + response.statusCode() + ": " + firstError(response.body()));
+            }
+        }
+        return firstId;
+    }
+
+    private static void runLevel(HttpClient client, String baseUrl, int firstId, int productCount, int concurrency,
+                                 int seconds) throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Future<WorkerResult>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < concurrency; worker++) {
+                long seed = worker;
+                results.add(executor.submit(() -> runWorker(client, baseUrl, firstId, productCount, deadline, seed)));
+            }
+        }
+
+        int total = 0;
+        int errors = 0;
+        for (Future<WorkerResult> result : results) {
+            total += result.get().latencies().length;
+            errors += result.get().errors();
+        }
+        long[] latencies = new long[total];
+        int offset = 0;
+        for (Future<WorkerResult> result : results) {
+            long[] workerLatencies = result.get().latencies();
+            System.arraycopy(workerLatencies, 0, latencies, offset, workerLatencies.length);
+            offset += workerLatencies.length;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-12d %14.0f %10d %10d %10d %10d %8d%n", concurrency, (double) total / seconds,
+                percentile(latencies, 50), percentile(latencies, 99), percentile(latencies, 99.9),
+                latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1000, errors);
+    }
+
+    // Looks up random products until the deadline and returns the latency of every successful request
+    private static WorkerResult runWorker(HttpClient client, String baseUrl, int firstId, int productCount, long deadline,
+                                    long seed) throws IOException, InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] latencies = new long[1024];
+        int count = 0;
+        int errors = 0;
+        while (System.nanoTime() < deadline) {
+            int id = firstId + random.nextInt(productCount);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/products/" + id)).GET().build();
+            long start = System.nanoTime();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            long latency = System.nanoTime() - start;
+            if (response.statusCode() != 200) {
+                errors++;
+                continue;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+        return new WorkerResult(Arrays.copyOf(latencies, count), errors);
+    }
+
+    // The first error object in a batch response, or the whole response when it has none
+    private static String firstError(String body) {
+        int start = body.indexOf("{\"error\"");
+        if (start < 0) {
+            return body;
+        }
+        int end = body.indexOf('}', start);
+        return end < 0 ? body.substring(start) : body.substring(start, end + 1);
+    }
+
+    private static long percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, index)] / 1000;
+    }
+}
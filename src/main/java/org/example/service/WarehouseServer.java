@@ -0,0 +1,373 @@
+// WarehouseServer class exposes the WarehouseService operations as JSON endpoints over HTTP.
+// Every request is handled on its own virtual thread, connections are kept alive between requests
+// and product listings are streamed to the client as they are written.
+// The server only listens on the loopback interface unless it is given another address. Responses are only sent
+// without delay when the JVM runs with -Dsun.net.httpserver.nodelay=true, which Main sets before starting the server.
+
+
+package org.example.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.entities.Category;
+import org.example.entities.ProductRecord;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class WarehouseServer {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int STREAMING_THRESHOLD = 256;
+
+    private final WarehouseService warehouseService;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public WarehouseServer(WarehouseService warehouseService, int port) throws IOException {
+        this(warehouseService, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    // The API has no authentication, so only bind to an address other than loopback on a trusted network
+    public WarehouseServer(WarehouseService warehouseService, InetSocketAddress address) throws IOException {
+        this.warehouseService = warehouseService;
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.close();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/+");
+            Map<String, String> params = parseParams(exchange.getRequestURI().getRawQuery());
+
+            if (method.equals("POST") && path.length == 1 && path[0].equals("batch")) {
+                executeBatch(exchange);
+                return;
+            }
+            exchange.getRequestBody().readAllBytes();
+            String operation = route(method, path, params);
+            if (operation == null) {
+                sendError(exchange, 404, "Unknown endpoint.");
+                return;
+            }
+
+            Object result;
+            try {
+                result = execute(operation, params);
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            if (result instanceof Optional<?> optional && optional.isEmpty()) {
+                sendError(exchange, 404, "Product not found.");
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if (result instanceof Collection<?> collection && collection.size() > STREAMING_THRESHOLD) {
+                // A length of 0 makes the response chunked, so large listings are sent while they are written
+                exchange.sendResponseHeaders(200, 0);
+                try (Writer out = responseWriter(exchange)) {
+                    writeJson(out, result);
+                }
+            } else {
+                // Small responses are sent with a known length in one write, which avoids waiting on delayed acknowledgements
+                StringWriter out = new StringWriter();
+                writeJson(out, result);
+                byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        }
+    }
+
+    // Maps a method and path to one of the operation names that are also used by the batch endpoint
+    private static String route(String method, String[] path, Map<String, String> params) {
+        String joined = String.join("/", path);
+        switch (method) {
+            case "GET" -> {
+                if (path.length == 2 && path[0].equals("products") && isNumber(path[1])) {
+                    params.put("id", path[1]);
+                    return "get";
+                }
+                if (path.length == 3 && path[0].equals("categories") && path[2].equals("count")) {
+                    params.put("category", path[1]);
+                    return "count-category";
+                }
+                return switch (joined) {
+                    case "products" -> params.containsKey("category") ? "list-category" : "list";
+                    case "products/created-after" -> "list-created-after";
+                    case "products/modified" -> "list-modified";
+                    case "products/max-rating-this-month" -> "list-max-rating-this-month";
+                    case "products/min-rating" -> "list-min-rating";
+                    case "categories" -> "categories";
+                    case "letters" -> "count-letters";
+                    default -> null;
+                };
+            }
+            case "POST" -> {
+                return joined.equals("products") ? "add" : null;
+            }
+            case "PUT", "PATCH", "DELETE" -> {
+                if (path.length == 2 && path[0].equals("products") && isNumber(path[1])) {
+                    params.put("id", path[1]);
+                    return switch (method) {
+                        case "PUT" -> "update";
+                        case "PATCH" -> "patch";
+                        default -> "remove";
+                    };
+                }
+                return null;
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    // Runs one named operation against the warehouse service and returns its result
+    private Object execute(String operation, Map<String, String> params) {
+        return switch (operation) {
+            case "add" -> {
+                warehouseService.addProduct(intParam(params, "id"), params.get("name"), categoryParam(params),
+                        intParam(params, "rating"), LocalDateTime.now());
+                yield Map.of("added", true);
+            }
+            case "get" -> warehouseService.getProductById(intParam(params, "id"));
+            case "update" -> Map.of("updated", warehouseService.updateProduct(intParam(params, "id"), params.get("name"),
+                    categoryParam(params), intParam(params, "rating")));
+            case "patch" -> patch(params);
+            case "remove" -> Map.of("removed", warehouseService.removeProduct(intParam(params, "id")));
+            case "list" -> warehouseService.getAllProducts();
+            case "list-category" -> warehouseService.getAllProductsByCategorySortedByProductName(categoryParam(params));
+            case "list-created-after" -> warehouseService.getAllProductsCreatedAfterASpecificDate(dateParam(params));
+            case "list-modified" -> warehouseService.getAllProductsThatHasBeenModifiedSinceCreation();
+            case "list-max-rating-this-month" -> warehouseService.getAllProductsWithMaxRatingCreatedThisMonthSortedByDate();
+            case "list-min-rating" -> warehouseService.getProductsByMinRating(categoryParam(params), intParam(params, "minRating"));
+            case "categories" -> warehouseService.getAllCategoriesThatHasAtLeastOneProduct();
+            case "count-category" -> Map.of("count", warehouseService.getNumberOfProductsInCategory(categoryParam(params)));
+            case "count-letters" -> warehouseService.getNumberOfProductsStartingWithEachLetter();
+            default -> throw new IllegalArgumentException("Unknown operation: " + operation);
+        };
+    }
+
+    // Changes only the fields present in the request in one modification, and only if the product still has the version
+    // given in the request, if any; the result is empty when the product does not exist
+    private Object patch(Map<String, String> params) {
+        int id = intParam(params, "id");
+        Long expectedVersion = params.containsKey("version") ? longParam(params, "version") : null;
+        String name = params.get("name");
+        Category category = params.containsKey("category") ? categoryParam(params) : null;
+        Integer rating = params.containsKey("rating") ? intParam(params, "rating") : null;
+        if (warehouseService.patchProduct(id, expectedVersion, name, category, rating)) {
+            return Map.of("updated", true);
+        }
+        return warehouseService.getProductById(id).isPresent() ? Map.of("updated", false) : Optional.empty();
+    }
+
+    // Runs one operation per line of the request body, each written as a query string such as op=get&id=1
+    private void executeBatch(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+             Writer out = responseWriter(exchange)) {
+            out.write('[');
+            boolean first = true;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                Map<String, String> params = parseParams(line);
+                String operation = params.remove("op");
+                try {
+                    Object result = execute(operation == null ? "" : operation, params);
+                    if (result instanceof Optional<?> optional && optional.isEmpty()) {
+                        writeJson(out, Map.of("error", "Product not found."));
+                    } else {
+                        writeJson(out, result);
+                    }
+                } catch (IllegalArgumentException e) {
+                    writeJson(out, Map.of("error", String.valueOf(e.getMessage())));
+                }
+            }
+            out.write(']');
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = ("{\"error\":" + quote(message) + "}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static Writer responseWriter(HttpExchange exchange) {
+        return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private static void writeJson(Writer out, Object value) throws IOException {
+        switch (value) {
+            case null -> out.write("null");
+            case ProductRecord product -> writeProduct(out, product);
+            case Optional<?> optional -> writeJson(out, optional.orElse(null));
+            case Map<?, ?> map -> {
+                out.write('{');
+                boolean first = true;
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    if (!first) {
+                        out.write(',');
+                    }
+                    first = false;
+                    out.write(quote(String.valueOf(entry.getKey())));
+                    out.write(':');
+                    writeJson(out, entry.getValue());
+                }
+                out.write('}');
+            }
+            case Collection<?> collection -> {
+                out.write('[');
+                boolean first = true;
+                for (Object element : collection) {
+                    if (!first) {
+                        out.write(',');
+                    }
+                    first = false;
+                    writeJson(out, element);
+                }
+                out.write(']');
+            }
+            case Number number -> out.write(number.toString());
+            case Boolean bool -> out.write(bool.toString());
+            default -> out.write(quote(value.toString()));
+        }
+    }
+
+    private static void writeProduct(Writer out, ProductRecord product) throws IOException {
+        out.write("{\"id\":");
+        out.write(Integer.toString(product.id()));
+        out.write(",\"name\":");
+        out.write(quote(product.name()));
+        out.write(",\"category\":\"");
+        out.write(product.category().name());
+        out.write("\",\"rating\":");
+        out.write(Integer.toString(product.rating()));
+        out.write(",\"createdDate\":\"");
+        out.write(product.createdDate().toString());
+        out.write("\",\"modifiedDate\":\"");
+        out.write(product.modifiedDate().toString());
+        out.write("\",\"version\":");
+        out.write(Long.toString(product.version()));
+        out.write('}');
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static Map<String, String> parseParams(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String key = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static boolean isNumber(String text) {
+        return !text.isEmpty() && text.chars().allMatch(Character::isDigit);
+    }
+
+    private static int intParam(Map<String, String> params, String name) {
+        try {
+            return Integer.parseInt(params.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " must be a number.");
+        }
+    }
+
+    private static long longParam(Map<String, String> params, String name) {
+        try {
+            return Long.parseLong(params.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " must be a number.");
+        }
+    }
+
+    private static Category categoryParam(Map<String, String> params) {
+        String category = params.get("category");
+        if (category == null) {
+            throw new IllegalArgumentException("Parameter category is required.");
+        }
+        try {
+            return Category.valueOf(category.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid category: " + category);
+        }
+    }
+
+    private static LocalDateTime dateParam(Map<String, String> params) {
+        try {
+            return LocalDateTime.parse(params.get("date") + "T00:00:00");
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Parameter date must be a date in the format YYYY-MM-DD.");
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package org.example.service;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.List;
 import java.util.Optional;
 import java.time.LocalDateTime;
@@ -11,13 +16,49 @@ import org.example.entities.Category;
 import org.example.entities.ProductRecord;
 
 public class WarehouseService {
-    private final Warehouse warehouse = new Warehouse();
-    private final Lock lock = new ReentrantLock();
+    private final Warehouse warehouse;
+    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    // Every operation holds the exclusive lock except compareAndSetProductRating, whose callers share the other one
+    private final Lock lock = readWriteLock.writeLock();
+    private final Lock ratingLock = readWriteLock.readLock();
+    // Records every change so it can be streamed to replicas, or null when the warehouse is not replicated
+    private final MutationLog mutationLog;
+    private final Consumer<ProductRecord> logChange;
+
+    public WarehouseService() {
+        this(null);
+    }
+
+    public WarehouseService(MutationLog mutationLog) {
+        this(new Warehouse(), mutationLog);
+    }
+
+    // Keeps at most maxResidentProducts products in memory and spills the others to the given file until close is called
+    public WarehouseService(Path spillFile, int maxResidentProducts) {
+        this(new Warehouse(spillFile, maxResidentProducts), null);
+    }
+
+    private WarehouseService(Warehouse warehouse, MutationLog mutationLog) {
+        this.warehouse = warehouse;
+        this.mutationLog = mutationLog;
+        this.logChange = mutationLog == null ? null : mutationLog::appendProduct;
+    }
 
     public void addProduct(int id, String name, Category category, int rating, LocalDateTime createdDate) {
         lock.lock();
         try {
             warehouse.addProduct(id, name, category, rating, createdDate);
+            logProduct(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void addProducts(Collection<ProductRecord> productRecords) {
+        lock.lock();
+        try {
+            warehouse.addProducts(productRecords);
+            productRecords.forEach(r -> logProduct(r.id()));
         } finally {
             lock.unlock();
         }
@@ -44,7 +85,113 @@ public class WarehouseService {
     public boolean updateProduct(int id, String newName, Category newCategory, int newRating) {
         lock.lock();
         try {
-            return warehouse.updateProduct(id, newName, newCategory, newRating);
+            boolean updated = warehouse.updateProduct(id, newName, newCategory, newRating);
+            if (updated) {
+                logProduct(id);
+            }
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean updateProductName(int id, String newName) {
+        lock.lock();
+        try {
+            boolean updated = warehouse.updateProductName(id, newName);
+            if (updated) {
+                logProduct(id);
+            }
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean updateProductCategory(int id, Category newCategory) {
+        lock.lock();
+        try {
+            boolean updated = warehouse.updateProductCategory(id, newCategory);
+            if (updated) {
+                logProduct(id);
+            }
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean updateProductRating(int id, int newRating) {
+        lock.lock();
+        try {
+            boolean updated = warehouse.updateProductRating(id, newRating);
+            if (updated) {
+                logProduct(id);
+            }
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Concurrent callers do not wait for each other, only for the other operations; with a memory budget a lookup moves
+    // products in and out of memory, so then callers take the exclusive lock like every other operation
+    public boolean compareAndSetProductRating(int id, long expectedVersion, int newRating) {
+        if (warehouse.keepsAllProductsInMemory()) {
+            ratingLock.lock();
+            try {
+                return warehouse.compareAndSetProductRatingConcurrently(id, expectedVersion, newRating, logChange);
+            } finally {
+                ratingLock.unlock();
+            }
+        }
+        lock.lock();
+        try {
+            boolean updated = warehouse.compareAndSetProductRating(id, expectedVersion, newRating);
+            if (updated) {
+                logProduct(id);
+            }
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean patchProduct(int id, Long expectedVersion, String newName, Category newCategory, Integer newRating) {
+        lock.lock();
+        try {
+            boolean updated = warehouse.patchProduct(id, expectedVersion, newName, newCategory, newRating);
+            if (updated) {
+                logProduct(id);
+            }
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean removeProduct(int id) {
+        lock.lock();
+        try {
+            boolean removed = warehouse.removeProduct(id);
+            if (removed && mutationLog != null) {
+                mutationLog.appendRemoval(id);
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int removeProducts(Collection<Integer> ids) {
+        lock.lock();
+        try {
+            int removed = warehouse.removeProducts(ids);
+            if (removed > 0 && mutationLog != null) {
+                // Removing an ID that does not exist is a no-op on replicas, so every requested ID can be logged
+                ids.forEach(mutationLog::appendRemoval);
+            }
+            return removed;
         } finally {
             lock.unlock();
         }
@@ -113,6 +260,15 @@ public class WarehouseService {
         }
     }
 
+    public List<ProductRecord> getProductsByMinRating(Category category, int minRating) {
+        lock.lock();
+        try {
+            return warehouse.getProductsByMinRating(category, minRating);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void validateProductId(int id) {
         lock.lock();
         try {
@@ -130,4 +286,92 @@ public class WarehouseService {
             lock.unlock();
         }
     }
+
+    MutationLog getMutationLog() {
+        return mutationLog;
+    }
+
+    // Returns the current products together with the sequence number of the last change they include
+    MutationLog.Snapshot snapshotForReplication() {
+        lock.lock();
+        try {
+            return new MutationLog.Snapshot(mutationLog.getLastSequence(), warehouse.getAllProducts());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Applies changes streamed from the primary of a replicated warehouse
+    void applyReplicatedChanges(List<MutationLog.Entry> entries) {
+        lock.lock();
+        try {
+            for (MutationLog.Entry entry : entries) {
+                if (entry.product() != null) {
+                    warehouse.restoreProduct(entry.product());
+                } else {
+                    warehouse.removeProduct(entry.removedId());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Replaces all products with a snapshot streamed from the primary of a replicated warehouse
+    void applyReplicatedSnapshot(List<ProductRecord> products) {
+        lock.lock();
+        try {
+            warehouse.clear();
+            products.forEach(warehouse::restoreProduct);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void logProduct(int id) {
+        if (mutationLog != null) {
+            warehouse.getProductById(id).ifPresent(mutationLog::appendProduct);
+        }
+    }
+
+    // Closes and deletes the spill file of a service created with a memory budget; does nothing otherwise
+    public void close() {
+        lock.lock();
+        try {
+            warehouse.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Runs every operation on a separate scratch warehouse so the JIT has compiled them before real traffic arrives
+    public void warmUp(int iterations) {
+        Warehouse scratch = new Warehouse();
+        Category[] categories = Category.values();
+        LocalDateTime now = LocalDateTime.now();
+        int size = 1000;
+        List<ProductRecord> productRecords = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            LocalDateTime createdDate = now.minusHours(id);
+            productRecords.add(new ProductRecord(id, "Product " + id, categories[id % categories.length], 1 + id % 10, createdDate, createdDate, 0));
+        }
+        scratch.addProducts(productRecords);
+        for (int i = 0; i < iterations; i++) {
+            int id = 1 + i % size;
+            Category category = categories[i % categories.length];
+            scratch.checkIfProductIdExists(size + 1);
+            scratch.getProductById(id);
+            scratch.updateProduct(id, "Product " + id, category, 1 + i % 10);
+            scratch.updateProductRating(id, 1 + (i + 1) % 10);
+            scratch.getAllProductsByCategorySortedByProductName(category);
+            scratch.getAllProductsCreatedAfterASpecificDate(now.minusHours(size / 2));
+            scratch.getAllProductsThatHasBeenModifiedSinceCreation();
+            scratch.getAllCategoriesThatHasAtLeastOneProduct();
+            scratch.getNumberOfProductsInCategory(category);
+            scratch.getNumberOfProductsStartingWithEachLetter();
+            scratch.getAllProductsWithMaxRatingCreatedThisMonthSortedByDate();
+            scratch.getProductsByMinRating(category, 1 + i % 10);
+            scratch.removeProduct(size + 1);
+        }
+    }
 }
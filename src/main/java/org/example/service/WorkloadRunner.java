@@ -0,0 +1,386 @@
+// WorkloadRunner class load tests a WarehouseService with a realistic mix of operations.
+// It generates a synthetic catalog, then either runs a configurable mix of operations from several threads with
+// Zipfian skew on the product IDs, or replays a recorded trace file written in the BatchRunner command format.
+// Throughput, latency percentiles and bytes allocated per operation are reported for each kind of operation.
+// Runs with the same options and seed generate the same catalog and the same operations. A replayed trace keeps the
+// recorded order of the commands for each product, so every product goes through the same history on every run.
+//
+// Options, all optional:
+//   --products 100000          size of the generated catalog, 0 for none
+//   --category-weights 1,1,1,1 relative share of each category in Category order
+//   --names 10000              number of distinct product names
+//   --date-spread-days 365     created dates are spread over this many days before --base-date
+//   --base-date 2025-01-01
+//   --threads 4
+//   --operations 1000000       total number of operations over all threads
+//   --mix get=80,list=10,update=5,add=5
+//   --skew 0.99                Zipfian skew of the product IDs used by get and update, 0 for uniform
+//   --seed 42
+//   --warm-up 0                warm-up iterations to run before the measurement
+//   --trace file               replay the commands in the file instead of generating operations
+//   --max-resident 0           keep at most this many products in memory and spill the rest to disk, 0 for all
+//   --spill-file file          where to spill products with --max-resident, a temporary file by default
+
+
+package org.example.service;
+
+import org.example.entities.Category;
+import org.example.entities.ProductRecord;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class WorkloadRunner {
+    private static final String[] NAME_WORDS = {"Laptop", "Shirt", "Novel", "Puzzle", "Camera", "Jacket", "Atlas",
+            "Robot", "Headphones", "Sneakers", "Cookbook", "Kite", "Monitor", "Dress", "Magazine", "Yo-yo"};
+    // Trace commands whose first argument is a product ID
+    private static final Set<String> PRODUCT_COMMANDS = Set.of("add", "get", "update", "update-name", "update-category",
+            "update-rating", "remove");
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Map<String, String> options;
+    // Where the load time and the report are printed
+    private final PrintStream out;
+    private final WarehouseService warehouseService;
+
+    // Latencies and allocations of one kind of operation, recorded by one thread
+    static final class OperationStats {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long allocatedBytes;
+
+        void record(long latencyNanos, long allocated) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            allocatedBytes += allocated;
+        }
+
+        void addAll(OperationStats other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i], 0);
+            }
+            allocatedBytes += other.allocatedBytes;
+        }
+
+        int count() {
+            return count;
+        }
+
+        long percentileNanos(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, index)];
+        }
+
+        long allocatedBytesPerOperation() {
+            return count == 0 ? 0 : allocatedBytes / count;
+        }
+    }
+
+    public WorkloadRunner(Map<String, String> options) {
+        this(options, System.out);
+    }
+
+    public WorkloadRunner(Map<String, String> options, PrintStream out) {
+        this.options = options;
+        this.out = out;
+        int maxResident = intOption("max-resident", 0);
+        if (maxResident > 0) {
+            try {
+                Path spillFile = options.containsKey("spill-file")
+                        ? Path.of(options.get("spill-file"))
+                        : Files.createTempFile("warehouse-spill", ".bin");
+                this.warehouseService = new WarehouseService(spillFile, maxResident);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            this.warehouseService = new WarehouseService();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option but got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        new WorkloadRunner(options).run();
+    }
+
+    // Runs the workload, prints the report and returns how many operations of each kind were run
+    public Map<String, Integer> run() throws Exception {
+        try {
+            return runWorkload();
+        } finally {
+            warehouseService.close();
+        }
+    }
+
+    private Map<String, Integer> runWorkload() throws Exception {
+        long loadStart = System.nanoTime();
+        List<ProductRecord> catalog = generateCatalog();
+        warehouseService.addProducts(catalog);
+        out.printf("Loaded %d products in %d ms%n", catalog.size(), (System.nanoTime() - loadStart) / 1_000_000);
+
+        int warmUp = intOption("warm-up", 0);
+        if (warmUp > 0) {
+            warehouseService.warmUp(warmUp);
+        }
+
+        int threads = intOption("threads", 4);
+        long start = System.nanoTime();
+        List<Map<String, OperationStats>> perThread = options.containsKey("trace")
+                ? replayTrace(Path.of(options.get("trace")), threads)
+                : runMix(catalog.size(), threads);
+        long elapsed = System.nanoTime() - start;
+
+        Map<String, OperationStats> total = new TreeMap<>();
+        for (Map<String, OperationStats> stats : perThread) {
+            stats.forEach((operation, operationStats) -> total.computeIfAbsent(operation, o -> new OperationStats()).addAll(operationStats));
+        }
+        report(total, elapsed);
+        Map<String, Integer> counts = new TreeMap<>();
+        total.forEach((operation, stats) -> counts.put(operation, stats.count()));
+        return counts;
+    }
+
+    WarehouseService getWarehouseService() {
+        return warehouseService;
+    }
+
+    // Generates the catalog described by the options; the same options always give the same catalog
+    List<ProductRecord> generateCatalog() {
+        int productCount = intOption("products", 100_000);
+        int nameCount = Math.max(1, intOption("names", Math.max(1, productCount / 10)));
+        int spreadDays = intOption("date-spread-days", 365);
+        LocalDateTime baseDate = LocalDate.parse(options.getOrDefault("base-date", "2025-01-01")).atStartOfDay();
+        double[] categoryWeights = categoryWeights();
+        SplittableRandom random = new SplittableRandom(longOption("seed", 42));
+
+        List<ProductRecord> catalog = new ArrayList<>(productCount);
+        for (int id = 1; id <= productCount; id++) {
+            String name = productName(random.nextInt(nameCount));
+            Category category = pickCategory(random, categoryWeights);
+            LocalDateTime createdDate = baseDate.minusSeconds(random.nextLong(Math.max(1, spreadDays * 86_400L)));
+            catalog.add(new ProductRecord(id, name, category, 1 + random.nextInt(10), createdDate, createdDate, 0));
+        }
+        return catalog;
+    }
+
+    private List<Map<String, OperationStats>> runMix(int productCount, int threads) throws Exception {
+        Map<String, Integer> mix = parseMix(options.getOrDefault("mix", "get=80,list=10,update=5,add=5"));
+        int mixTotal = mix.values().stream().mapToInt(Integer::intValue).sum();
+        long operations = longOption("operations", 1_000_000);
+        long operationsPerThread = operations / threads;
+        long seed = longOption("seed", 42);
+        ZipfianGenerator keys = new ZipfianGenerator(Math.max(1, productCount), Double.parseDouble(options.getOrDefault("skew", "0.99")));
+        double[] categoryWeights = categoryWeights();
+        int nameCount = Math.max(1, intOption("names", Math.max(1, productCount / 10)));
+        LocalDateTime baseDate = LocalDate.parse(options.getOrDefault("base-date", "2025-01-01")).atStartOfDay();
+
+        List<Future<Map<String, OperationStats>>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int thread = 0; thread < threads; thread++) {
+                int threadIndex = thread;
+                futures.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed + 1 + threadIndex);
+                    // Every thread adds products with its own range of IDs, so adds never collide and runs repeat exactly
+                    int nextAddId = (int) (productCount + 1 + threadIndex * operationsPerThread);
+                    Map<String, OperationStats> stats = new HashMap<>();
+                    for (long i = 0; i < operationsPerThread; i++) {
+                        String operation = pickOperation(random.nextInt(mixTotal), mix);
+                        int id = 1 + (int) keys.next(random);
+                        Category category = pickCategory(random, categoryWeights);
+                        int rating = 1 + random.nextInt(10);
+                        int addId = operation.equals("add") ? nextAddId++ : 0;
+                        String name = operation.equals("add") ? productName(random.nextInt(nameCount)) : null;
+
+                        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+                        long startNanos = System.nanoTime();
+                        switch (operation) {
+                            case "get" -> warehouseService.getProductById(id);
+                            case "list" -> warehouseService.getAllProductsByCategorySortedByProductName(category);
+                            case "update" -> warehouseService.updateProductRating(id, rating);
+                            case "add" -> warehouseService.addProduct(addId, name, category, rating, baseDate);
+                            case "min-rating" -> warehouseService.getProductsByMinRating(category, rating);
+                            case "count" -> warehouseService.getNumberOfProductsInCategory(category);
+                            default -> throw new IllegalArgumentException("Unknown operation in mix: " + operation);
+                        }
+                        long latency = System.nanoTime() - startNanos;
+                        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                        stats.computeIfAbsent(operation, o -> new OperationStats()).record(latency, allocated);
+                    }
+                    return stats;
+                }));
+            }
+        }
+        List<Map<String, OperationStats>> results = new ArrayList<>();
+        for (Future<Map<String, OperationStats>> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    // Replays the commands of a trace file. All commands for one product ID run on the same thread in the recorded order;
+    // commands without a product ID, such as listings, run on the first thread and see what the others have done so far
+    private List<Map<String, OperationStats>> replayTrace(Path trace, int threads) throws Exception {
+        List<String> lines = Files.readAllLines(trace);
+        List<List<Integer>> lineIndexesByThread = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            lineIndexesByThread.add(new ArrayList<>());
+        }
+        for (int lineIndex = 0; lineIndex < lines.size(); lineIndex++) {
+            String line = lines.get(lineIndex).strip();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                lineIndexesByThread.get(threadFor(line, threads)).add(lineIndex);
+            }
+        }
+        List<Future<Map<String, OperationStats>>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int thread = 0; thread < threads; thread++) {
+                int threadIndex = thread;
+                futures.add(executor.submit(() -> {
+                    BatchRunner batchRunner = new BatchRunner(warehouseService, Writer.nullWriter());
+                    Map<String, OperationStats> stats = new HashMap<>();
+                    for (int lineIndex : lineIndexesByThread.get(threadIndex)) {
+                        String line = lines.get(lineIndex).strip();
+                        String operation = line.split("\\s+", 2)[0];
+                        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+                        long startNanos = System.nanoTime();
+                        boolean succeeded = batchRunner.runNow(line, lineIndex + 1);
+                        long latency = System.nanoTime() - startNanos;
+                        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                        stats.computeIfAbsent(succeeded ? operation : operation + " (failed)", o -> new OperationStats())
+                                .record(latency, allocated);
+                    }
+                    return stats;
+                }));
+            }
+        }
+        List<Map<String, OperationStats>> results = new ArrayList<>();
+        for (Future<Map<String, OperationStats>> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    // Picks the thread for a trace line from the product ID it starts with, if any
+    private static int threadFor(String line, int threads) {
+        String[] parts = line.split("\\s+", 3);
+        if (parts.length > 1 && PRODUCT_COMMANDS.contains(parts[0])) {
+            try {
+                return Math.floorMod(Integer.parseInt(parts[1]), threads);
+            } catch (NumberFormatException e) {
+                // The line is reported as failed when it is run
+            }
+        }
+        return 0;
+    }
+
+    private void report(Map<String, OperationStats> total, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long operations = total.values().stream().mapToLong(OperationStats::count).sum();
+        out.printf("%d operations in %.2f s, %.0f operations/s%n", operations, seconds, operations / seconds);
+        out.printf("%-20s %10s %12s %10s %10s %10s %10s %10s %12s%n",
+                "operation", "count", "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "bytes/op");
+        total.forEach((operation, stats) -> out.printf("%-20s %10d %12.0f %10.1f %10.1f %10.1f %10.1f %10.1f %12d%n",
+                operation, stats.count(), stats.count() / seconds,
+                stats.percentileNanos(50) / 1e3, stats.percentileNanos(90) / 1e3, stats.percentileNanos(99) / 1e3,
+                stats.percentileNanos(99.9) / 1e3, stats.percentileNanos(100) / 1e3, stats.allocatedBytesPerOperation()));
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Mix must look like get=80,list=10 but got: " + part);
+            }
+            weights.put(pair[0].strip(), Integer.parseInt(pair[1].strip()));
+        }
+        return weights;
+    }
+
+    private static String pickOperation(int draw, Map<String, Integer> mix) {
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            draw -= entry.getValue();
+            if (draw < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Operation mix weights must be positive.");
+    }
+
+    private double[] categoryWeights() {
+        Category[] categories = Category.values();
+        double[] weights = new double[categories.length];
+        Arrays.fill(weights, 1);
+        if (options.containsKey("category-weights")) {
+            String[] parts = options.get("category-weights").split(",");
+            if (parts.length != categories.length) {
+                throw new IllegalArgumentException("Expected " + categories.length + " category weights.");
+            }
+            for (int i = 0; i < parts.length; i++) {
+                weights[i] = Double.parseDouble(parts[i].strip());
+            }
+        }
+        double sum = Arrays.stream(weights).sum();
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] /= sum;
+        }
+        return weights;
+    }
+
+    private static Category pickCategory(SplittableRandom random, double[] weights) {
+        double draw = random.nextDouble();
+        Category[] categories = Category.values();
+        for (int i = 0; i < categories.length - 1; i++) {
+            draw -= weights[i];
+            if (draw < 0) {
+                return categories[i];
+            }
+        }
+        return categories[categories.length - 1];
+    }
+
+    private static String productName(int index) {
+        return NAME_WORDS[index % NAME_WORDS.length] + " " + (index / NAME_WORDS.length + 1);
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private long longOption(String name, long defaultValue) {
+        return options.containsKey(name) ? Long.parseLong(options.get(name)) : defaultValue;
+    }
+}
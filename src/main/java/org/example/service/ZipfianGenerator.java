@@ -0,0 +1,51 @@
+// ZipfianGenerator class draws ranks from 0 to n - 1 where low ranks are drawn far more often than high ones,
+// like a few popular products getting most of the lookups. It uses the method from Gray et al., "Quickly Generating
+// Billion-Record Synthetic Databases", which needs O(n) work once and O(1) per draw.
+
+
+package org.example.service;
+
+import java.util.SplittableRandom;
+
+class ZipfianGenerator {
+    private final long items;
+    private final double theta;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+
+    // theta is the skew: 0 gives a uniform spread, values close to 1 put almost all draws on the first few ranks
+    ZipfianGenerator(long items, double theta) {
+        if (items < 1) {
+            throw new IllegalArgumentException("Zipfian generator needs at least one item.");
+        }
+        if (theta < 0 || theta >= 1) {
+            throw new IllegalArgumentException("Zipfian skew must be at least 0 and less than 1.");
+        }
+        this.items = items;
+        this.theta = theta;
+        this.zetaN = zeta(items, theta);
+        this.alpha = 1 / (1 - theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+    }
+
+    long next(SplittableRandom random) {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (items > 1 && uz < 1 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,99 @@
+// BatchRunnerTest contains tests for the BatchRunner class.
+
+
+package org.example.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRunnerTest {
+    private WarehouseService warehouseService;
+    private StringWriter out;
+    private BatchRunner batchRunner;
+
+    @BeforeEach
+    void setUp() {
+        warehouseService = new WarehouseService();
+        out = new StringWriter();
+        batchRunner = new BatchRunner(warehouseService, out);
+    }
+
+    @Test
+    void testAddAndListCategory() throws IOException {
+        int errors = batchRunner.run(new StringReader("""
+                # products
+                add 1 ELECTRONICS 8 Gaming Laptop
+                add 2 electronics 6 Camera
+
+                list-category ELECTRONICS
+                count-category ELECTRONICS
+                """));
+
+        assertEquals(0, errors);
+        String[] lines = out.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("2\tCamera\tELECTRONICS\t6\t"));
+        assertTrue(lines[1].startsWith("1\tGaming Laptop\tELECTRONICS\t8\t"));
+        assertEquals("ELECTRONICS\t2", lines[2]);
+    }
+
+    @Test
+    void testInvalidAddIsReportedAndOthersAreAdded() throws IOException {
+        int errors = batchRunner.run(new StringReader("""
+                add 1 ELECTRONICS 8 Laptop
+                add 1 ELECTRONICS 9 Smartphone
+                add 2 ELECTRONICS 7 Tablet
+                add 3 FOOD 7 Apple
+                """));
+
+        assertEquals(2, errors);
+        assertEquals("error\t2\tProduct ID already exists.\nerror\t4\tInvalid category: FOOD\n", out.toString());
+        assertEquals(2, warehouseService.getAllProducts().size());
+    }
+
+    @Test
+    void testErrorsAreWrittenInLineOrder() throws IOException {
+        int errors = batchRunner.run(new StringReader("""
+                add 1 ELECTRONICS 8 Laptop
+                add 1 ELECTRONICS 9 Smartphone
+                add x ELECTRONICS 7 Tablet
+                add 2 ELECTRONICS 11 Camera
+                add 3 BOOKS 5 Novel
+                get 4
+                """));
+
+        assertEquals(4, errors);
+        assertEquals("""
+                error\t2\tProduct ID already exists.
+                error\t3\tInvalid number: x
+                error\t4\tProduct rating must be between 1 and 10.
+                error\t6\tProduct not found.
+                """, out.toString());
+        assertEquals(2, warehouseService.getAllProducts().size());
+    }
+
+    @Test
+    void testUpdateAndGet() throws IOException {
+        int errors = batchRunner.run(new StringReader("""
+                add 1 ELECTRONICS 8 Laptop
+                update-rating 1 10
+                update-name 1 Gaming Laptop
+                get 1
+                update-rating 2 10
+                unknown
+                """));
+
+        assertEquals(2, errors);
+        String[] lines = out.toString().split("\n");
+        assertTrue(lines[0].startsWith("1\tGaming Laptop\tELECTRONICS\t10\t"));
+        assertTrue(lines[0].endsWith("\t2"));
+        assertEquals("error\t5\tProduct not found.", lines[1]);
+        assertEquals("error\t6\tUnknown command: unknown", lines[2]);
+    }
+}
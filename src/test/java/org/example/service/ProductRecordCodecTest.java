@@ -0,0 +1,177 @@
+// ProductRecordCodecTest contains tests for the ProductRecordCodec class and its stream writer and reader.
+
+
+package org.example.service;
+
+import org.example.entities.Category;
+import org.example.entities.ProductRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductRecordCodecTest {
+
+    @Test
+    void testRoundTripKeepsEveryField() {
+        LocalDateTime created = LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_789);
+        List<ProductRecord> batch = List.of(
+                new ProductRecord(1, "Laptop", Category.ELECTRONICS, 8, created, created, 0),
+                new ProductRecord(Integer.MAX_VALUE, "Laptop bag", Category.CLOTHING, 1, created.minusYears(30), created.plusDays(2), 7),
+                new ProductRecord(3, "Laptop bag", Category.BOOKS, 10, created.plusSeconds(1), created.plusSeconds(1), Long.MAX_VALUE),
+                new ProductRecord(4, "Räksmörgås 日本 😀", Category.TOYS, 5, created.minusNanos(1), created, 2),
+                new ProductRecord(5, "L", Category.ELECTRONICS, 3, LocalDateTime.of(1969, 12, 31, 23, 59), created, 1));
+
+        ProductRecordCodec codec = new ProductRecordCodec();
+        ByteBuffer buffer = codec.encode(batch, ByteBuffer.allocate(8));
+        buffer.flip();
+        List<ProductRecord> decoded = new ArrayList<>();
+
+        assertEquals(5, codec.decode(buffer, decoded));
+        assertEquals(batch, decoded);
+        assertFalse(buffer.hasRemaining());
+        assertSame(decoded.get(1).name(), decoded.get(2).name());
+    }
+
+    @Test
+    void testEmptyBatchAndUnsupportedVersion() {
+        ProductRecordCodec codec = new ProductRecordCodec();
+        ByteBuffer buffer = codec.encode(List.of(), ByteBuffer.allocate(64));
+        buffer.flip();
+        List<ProductRecord> decoded = new ArrayList<>();
+        assertEquals(0, codec.decode(buffer.duplicate(), decoded));
+        assertTrue(decoded.isEmpty());
+
+        buffer.put(Integer.BYTES, (byte) (ProductRecordCodec.VERSION + 1));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(buffer, decoded));
+    }
+
+    @Test
+    void testSortedBatchesShareNamePrefixes() {
+        List<ProductRecord> catalog = new WorkloadRunner(Map.of("products", "5000", "names", "500", "seed", "3")).generateCatalog();
+        List<ProductRecord> sorted = new ArrayList<>(catalog);
+        sorted.sort(Comparator.comparing(ProductRecord::name));
+
+        int unsortedSize = new ProductRecordCodec().encode(catalog, ByteBuffer.allocate(1 << 16)).position();
+        int sortedSize = new ProductRecordCodec().encode(sorted, ByteBuffer.allocate(1 << 16)).position();
+        assertTrue(sortedSize < unsortedSize);
+    }
+
+    @Test
+    void testStreamWriterAndReader() throws Exception {
+        List<ProductRecord> catalog = new WorkloadRunner(Map.of("products", "2500", "seed", "5")).generateCatalog();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ProductRecordCodec.StreamWriter writer = new ProductRecordCodec.StreamWriter(Channels.newChannel(bytes), 1000, false)) {
+            for (ProductRecord record : catalog) {
+                writer.write(record);
+            }
+        }
+
+        List<ProductRecord> read = new ArrayList<>();
+        try (ProductRecordCodec.StreamReader reader = new ProductRecordCodec.StreamReader(
+                Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())))) {
+            for (ProductRecord record = reader.read(); record != null; record = reader.read()) {
+                read.add(record);
+            }
+        }
+        assertEquals(catalog, read);
+    }
+
+    @Test
+    void testBinaryIsSmallerThanText() {
+        List<ProductRecord> catalog = new WorkloadRunner(Map.of("products", "5000", "seed", "11")).generateCatalog();
+        List<ProductRecord> sorted = new ArrayList<>(catalog);
+        sorted.sort(Comparator.comparing(ProductRecord::name));
+
+        int binarySize = new ProductRecordCodec().encode(sorted, ByteBuffer.allocate(1 << 16)).position();
+        byte[] text = ProductRecordCodecBenchmark.encodeText(sorted);
+        assertTrue(binarySize * 3 < text.length);
+        assertEquals(sorted, ProductRecordCodecBenchmark.decodeText(text));
+    }
+
+    @Test
+    void testCorruptBatchIsRejected() {
+        LocalDateTime now = LocalDateTime.now();
+        ProductRecordCodec codec = new ProductRecordCodec();
+        ByteBuffer buffer = codec.encode(List.of(new ProductRecord(1, "Laptop", Category.ELECTRONICS, 8, now, now, 0)), ByteBuffer.allocate(64));
+        buffer.flip();
+        // The category byte comes right after the name, the only record in the batch
+        int categoryPosition = indexOf(buffer, "Laptop".getBytes(StandardCharsets.UTF_8)) + "Laptop".length();
+
+        ByteBuffer badCategory = copyOf(buffer);
+        badCategory.put(categoryPosition, (byte) 99);
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(badCategory, new ArrayList<>()));
+
+        ByteBuffer truncated = copyOf(buffer).limit(buffer.limit() - 3);
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(truncated, new ArrayList<>()));
+    }
+
+    @Test
+    void testCorruptLengthsAreRejectedBeforeAllocating() {
+        // A batch of one record whose name claims to be 1.8 GB long
+        ByteBuffer hugeName = ByteBuffer.allocate(64);
+        hugeName.putInt(0).put(ProductRecordCodec.VERSION);
+        putVarLong(hugeName, 1);
+        putVarLong(hugeName, 0);
+        putVarLong(hugeName, 1);
+        putVarLong(hugeName, 0);
+        putVarLong(hugeName, 1_800_000_000L);
+        hugeName.put(new byte[20]);
+        hugeName.putInt(0, hugeName.position() - Integer.BYTES).flip();
+        assertThrows(IllegalArgumentException.class, () -> new ProductRecordCodec().decode(hugeName, new ArrayList<>()));
+
+        ByteBuffer manyRecords = ByteBuffer.allocate(64);
+        manyRecords.putInt(0).put(ProductRecordCodec.VERSION);
+        putVarLong(manyRecords, Integer.MAX_VALUE);
+        putVarLong(manyRecords, 0);
+        manyRecords.putInt(0, manyRecords.position() - Integer.BYTES).flip();
+        assertThrows(IllegalArgumentException.class, () -> new ProductRecordCodec().decode(manyRecords, new ArrayList<>()));
+
+        ByteBuffer longerThanBuffer = ByteBuffer.allocate(16).putInt(Integer.MAX_VALUE).put(ProductRecordCodec.VERSION).flip();
+        assertThrows(IllegalArgumentException.class, () -> new ProductRecordCodec().decode(longerThanBuffer, new ArrayList<>()));
+
+        for (int length : new int[]{-1, Integer.MAX_VALUE}) {
+            byte[] stream = ByteBuffer.allocate(Integer.BYTES).putInt(length).array();
+            ProductRecordCodec.StreamReader reader = new ProductRecordCodec.StreamReader(
+                    Channels.newChannel(new ByteArrayInputStream(stream)));
+            assertThrows(IllegalArgumentException.class, reader::read);
+        }
+    }
+
+    private static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static ByteBuffer copyOf(ByteBuffer buffer) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.limit());
+        copy.put(buffer.duplicate()).flip();
+        return copy;
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte[] bytes) {
+        for (int start = 0; start + bytes.length <= buffer.limit(); start++) {
+            int matched = 0;
+            while (matched < bytes.length && buffer.get(start + matched) == bytes[matched]) {
+                matched++;
+            }
+            if (matched == bytes.length) {
+                return start;
+            }
+        }
+        throw new AssertionError("Bytes not found");
+    }
+}
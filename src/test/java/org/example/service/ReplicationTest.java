@@ -0,0 +1,190 @@
+// ReplicationTest contains tests for the ReplicationPrimary and ReplicationReplica classes.
+
+
+package org.example.service;
+
+import org.example.entities.Category;
+import org.example.entities.ProductRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationTest {
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    private WarehouseService primaryService;
+    private ReplicationPrimary primary;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    private void startPrimary(MutationLog mutationLog) throws IOException {
+        primaryService = new WarehouseService(mutationLog);
+        primary = new ReplicationPrimary(primaryService, 0);
+        primary.start();
+        resources.add(primary);
+    }
+
+    private ReplicationReplica startReplica() throws IOException {
+        ReplicationReplica replica = new ReplicationReplica("localhost", primary.getPort());
+        replica.start();
+        resources.add(0, replica);
+        return replica;
+    }
+
+    private void awaitCaughtUp(ReplicationReplica replica) throws InterruptedException {
+        await(() -> replica.getLastAppliedSequence() == primaryService.getMutationLog().getLastSequence()
+                && replica.getReplicationLag() == 0);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for replication");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testReplicaAppliesChanges() throws Exception {
+        startPrimary(new MutationLog());
+        ReplicationReplica replica = startReplica();
+        LocalDateTime now = LocalDateTime.now();
+
+        primaryService.addProduct(1, "Laptop", Category.ELECTRONICS, 8, now);
+        primaryService.addProduct(2, "Shirt", Category.CLOTHING, 7, now);
+        primaryService.addProducts(List.of(new ProductRecord(3, "Camera", Category.ELECTRONICS, 10, now, now, 0)));
+        primaryService.updateProductRating(1, 10);
+        primaryService.updateProduct(2, "T-shirt", Category.CLOTHING, 6);
+        primaryService.removeProduct(3);
+        awaitCaughtUp(replica);
+
+        WarehouseService replicaService = replica.getWarehouseService();
+        assertEquals(primaryService.getAllProducts(), replicaService.getAllProducts());
+        assertEquals(primaryService.getAllProductsByCategorySortedByProductName(Category.ELECTRONICS),
+                replicaService.getAllProductsByCategorySortedByProductName(Category.ELECTRONICS));
+        assertEquals(primaryService.getProductsByMinRating(Category.ELECTRONICS, 1),
+                replicaService.getProductsByMinRating(Category.ELECTRONICS, 1));
+        assertEquals(0, replicaService.getNumberOfProductsInCategory(Category.BOOKS));
+        assertEquals(0, replica.getNumberOfSnapshotsApplied());
+    }
+
+    @Test
+    void testReplicaResumesAfterDisconnect() throws Exception {
+        startPrimary(new MutationLog());
+        ReplicationReplica replica = startReplica();
+        primaryService.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+        awaitCaughtUp(replica);
+
+        primary.disconnectReplicas();
+        primaryService.addProduct(2, "Shirt", Category.CLOTHING, 7, LocalDateTime.now());
+        primaryService.updateProductRating(1, 9);
+        await(() -> replica.getNumberOfConnections() == 2);
+        awaitCaughtUp(replica);
+
+        assertEquals(primaryService.getAllProducts(), replica.getWarehouseService().getAllProducts());
+        assertEquals(0, replica.getNumberOfSnapshotsApplied());
+    }
+
+    @Test
+    void testReplicaGetsSnapshotWhenLogNoLongerHasChanges() throws Exception {
+        startPrimary(new MutationLog(2));
+        for (int id = 1; id <= 10; id++) {
+            primaryService.addProduct(id, "Product " + id, Category.BOOKS, 5, LocalDateTime.now());
+        }
+        primaryService.removeProduct(4);
+
+        ReplicationReplica replica = startReplica();
+        awaitCaughtUp(replica);
+        primaryService.updateProductName(5, "Novel");
+        awaitCaughtUp(replica);
+
+        assertEquals(primaryService.getAllProducts(), replica.getWarehouseService().getAllProducts());
+        assertEquals(1, replica.getNumberOfSnapshotsApplied());
+    }
+
+    @Test
+    void testReplicaRecoversFromCorruptFrame() throws Exception {
+        ServerSocketChannel fakePrimary = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        resources.add(fakePrimary);
+        ReplicationReplica replica = new ReplicationReplica("localhost", ((InetSocketAddress) fakePrimary.getLocalAddress()).getPort());
+        replica.start();
+        resources.add(0, replica);
+
+        // The first connection gets a frame of an unknown type
+        try (SocketChannel connection = fakePrimary.accept()) {
+            ByteBuffer handshake = ByteBuffer.allocate(Long.BYTES);
+            ReplicationFrames.readFully(connection, handshake);
+            assertEquals(0, handshake.getLong(0));
+            ReplicationFrames.writeFully(connection, ByteBuffer.allocate(Integer.BYTES + 1 + Long.BYTES).putInt(0, 1 + Long.BYTES).put(4, (byte) 9));
+            await(() -> replica.getNumberOfFailures() == 1);
+        }
+        assertTrue(replica.isFailed());
+        assertInstanceOf(IllegalArgumentException.class, replica.getLastFailure());
+
+        // After reconnecting the replica asks for a snapshot instead of continuing from its last change
+        try (SocketChannel connection = fakePrimary.accept()) {
+            ByteBuffer handshake = ByteBuffer.allocate(Long.BYTES);
+            ReplicationFrames.readFully(connection, handshake);
+            assertEquals(-1, handshake.getLong(0));
+            LocalDateTime now = LocalDateTime.now();
+            List<ProductRecord> products = List.of(new ProductRecord(1, "Laptop", Category.ELECTRONICS, 8, now, now, 0));
+            ReplicationFrames.writeFully(connection, ReplicationFrames.encodeSnapshot(5, new MutationLog.Snapshot(5, products)));
+            await(() -> !replica.isFailed());
+        }
+        assertEquals(5, replica.getLastAppliedSequence());
+        assertEquals(1, replica.getNumberOfSnapshotsApplied());
+        assertEquals(1, replica.getWarehouseService().getAllProducts().size());
+    }
+
+    @Test
+    void testCorruptLengthsAreRejectedBeforeAllocating() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        List<ProductRecord> products = List.of(new ProductRecord(1, "Laptop", Category.ELECTRONICS, 8, now, now, 0));
+        ByteBuffer snapshot = ReplicationFrames.encodeSnapshot(5, new MutationLog.Snapshot(5, products));
+        // After the length, type, two sequence numbers, count and ID comes the name length
+        int nameLengthPosition = Integer.BYTES + 1 + Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+        ByteBuffer hugeName = snapshot.duplicate().putInt(nameLengthPosition, 1_800_000_000).position(Integer.BYTES);
+        assertThrows(IllegalArgumentException.class, () -> ReplicationFrames.decode(hugeName));
+        ByteBuffer manyProducts = snapshot.duplicate().putInt(Integer.BYTES + 1 + Long.BYTES + Long.BYTES, Integer.MAX_VALUE).position(Integer.BYTES);
+        assertThrows(IllegalArgumentException.class, () -> ReplicationFrames.decode(manyProducts));
+
+        ServerSocketChannel fakePrimary = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        resources.add(fakePrimary);
+        ReplicationReplica replica = new ReplicationReplica("localhost", ((InetSocketAddress) fakePrimary.getLocalAddress()).getPort());
+        replica.start();
+        resources.add(0, replica);
+        try (SocketChannel connection = fakePrimary.accept()) {
+            ReplicationFrames.readFully(connection, ByteBuffer.allocate(Long.BYTES));
+            ReplicationFrames.writeFully(connection, ByteBuffer.allocate(Integer.BYTES).putInt(0, Integer.MAX_VALUE));
+            await(() -> replica.getNumberOfFailures() == 1);
+        }
+        assertInstanceOf(IllegalArgumentException.class, replica.getLastFailure());
+    }
+
+    @Test
+    void testPrimaryListensOnLoopbackByDefault() throws Exception {
+        startPrimary(new MutationLog());
+        assertTrue(primary.getAddress().getAddress().isLoopbackAddress());
+    }
+
+    @Test
+    void testPrimaryRequiresMutationLog() {
+        assertThrows(IllegalArgumentException.class, () -> new ReplicationPrimary(new WarehouseService(), 0));
+    }
+}
@@ -0,0 +1,126 @@
+// WarehouseServerTest contains tests for the WarehouseServer class.
+
+
+package org.example.service;
+
+import org.example.entities.Category;
+import org.example.entities.ProductRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WarehouseServerTest {
+    private WarehouseService warehouseService;
+    private WarehouseServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        warehouseService = new WarehouseService();
+        server = new WarehouseServer(warehouseService, 0);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testAddAndGetProduct() throws Exception {
+        HttpResponse<String> added = send("POST", "/products?id=1&name=Gaming+Laptop&category=electronics&rating=8", null);
+        assertEquals(200, added.statusCode());
+        assertEquals("{\"added\":true}", added.body());
+
+        HttpResponse<String> product = send("GET", "/products/1", null);
+        assertEquals(200, product.statusCode());
+        assertTrue(product.body().startsWith("{\"id\":1,\"name\":\"Gaming Laptop\",\"category\":\"ELECTRONICS\",\"rating\":8,"));
+    }
+
+    @Test
+    void testGetMissingProduct() throws Exception {
+        HttpResponse<String> response = send("GET", "/products/1", null);
+        assertEquals(404, response.statusCode());
+        assertEquals("{\"error\":\"Product not found.\"}", response.body());
+    }
+
+    @Test
+    void testInvalidProduct() throws Exception {
+        HttpResponse<String> response = send("POST", "/products?id=1&name=Laptop&category=ELECTRONICS&rating=11", null);
+        assertEquals(400, response.statusCode());
+        assertEquals("{\"error\":\"Product rating must be between 1 and 10.\"}", response.body());
+    }
+
+    @Test
+    void testPatchRatingWithVersion() throws Exception {
+        send("POST", "/products?id=1&name=Laptop&category=ELECTRONICS&rating=8", null);
+
+        assertEquals("{\"updated\":true}", send("PATCH", "/products/1?rating=9&version=0", null).body());
+        assertEquals("{\"updated\":false}", send("PATCH", "/products/1?rating=5&version=0", null).body());
+        assertEquals(9, warehouseService.getProductById(1).get().rating());
+    }
+
+    @Test
+    void testPatchIsOneModification() throws Exception {
+        send("POST", "/products?id=1&name=Laptop&category=ELECTRONICS&rating=8", null);
+
+        HttpResponse<String> invalid = send("PATCH", "/products/1?name=Novel&category=FOOD", null);
+        assertEquals(400, invalid.statusCode());
+        assertEquals("{\"error\":\"Invalid category: FOOD\"}", invalid.body());
+        assertEquals("Laptop", warehouseService.getProductById(1).get().name());
+
+        assertEquals("{\"updated\":true}", send("PATCH", "/products/1?name=Novel&category=BOOKS&rating=6", null).body());
+        ProductRecord product = warehouseService.getProductById(1).get();
+        assertEquals("Novel", product.name());
+        assertEquals(Category.BOOKS, product.category());
+        assertEquals(6, product.rating());
+        assertEquals(1, product.version());
+    }
+
+    @Test
+    void testPatchMissingProduct() throws Exception {
+        assertEquals(404, send("PATCH", "/products/999", null).statusCode());
+        assertEquals(404, send("PATCH", "/products/999?rating=5", null).statusCode());
+        assertEquals(404, send("PATCH", "/products/999?rating=5&version=0", null).statusCode());
+    }
+
+    @Test
+    void testBatch() throws Exception {
+        String body = """
+                op=add&id=1&name=Laptop&category=ELECTRONICS&rating=8
+                op=add&id=2&name=Camera&category=ELECTRONICS&rating=6
+                op=add&id=2&name=Camera&category=ELECTRONICS&rating=6
+                op=count-category&category=ELECTRONICS
+                """;
+        HttpResponse<String> response = send("POST", "/batch", body);
+        assertEquals(200, response.statusCode());
+        assertEquals("[{\"added\":true},{\"added\":true},{\"error\":\"Product ID already exists.\"},{\"count\":2}]", response.body());
+
+        HttpResponse<String> listing = send("GET", "/products?category=ELECTRONICS", null);
+        assertTrue(listing.body().indexOf("Camera") < listing.body().indexOf("Laptop"));
+    }
+
+    @Test
+    void testDeleteProduct() throws Exception {
+        send("POST", "/products?id=1&name=Laptop&category=ELECTRONICS&rating=8", null);
+
+        assertEquals("{\"removed\":true}", send("DELETE", "/products/1", null).body());
+        assertEquals(404, send("GET", "/products/1", null).statusCode());
+    }
+}
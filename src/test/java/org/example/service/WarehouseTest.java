@@ -7,8 +7,12 @@ import org.example.entities.Category;
 import org.example.entities.ProductRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -161,6 +165,17 @@ class WarehouseTest {
         });
     }
 
+    @Test
+    void testAddProductWithNullCategoryOrDate() {
+        assertThrows(IllegalArgumentException.class, () -> warehouse.addProduct(1, "Laptop", null, 8, LocalDateTime.now()));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, null));
+
+        assertTrue(warehouse.getProductById(1).isEmpty());
+        assertTrue(warehouse.getAllProducts().isEmpty());
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+        assertEquals(1, warehouse.getNumberOfProductsInCategory(Category.ELECTRONICS));
+    }
+
     @Test
     void testUpdateProductWithNullName() {
         warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
@@ -314,4 +329,506 @@ class WarehouseTest {
 
         assertTrue(result.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetAllProductsWithMaxRatingCreatedThisMonthAfterRatingChange() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime startOfMonth = now.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 10, startOfMonth.plusHours(1));
+        warehouse.addProduct(2, "Camera", Category.ELECTRONICS, 9, startOfMonth.plusHours(2));
+
+        warehouse.updateProduct(1, "Laptop", Category.ELECTRONICS, 8);
+        warehouse.updateProduct(2, "Camera", Category.ELECTRONICS, 10);
+
+        var result = warehouse.getAllProductsWithMaxRatingCreatedThisMonthSortedByDate();
+
+        assertEquals(1, result.size());
+        assertEquals("Camera", result.get(0).name());
+    }
+
+    @Test
+    void testGetProductsByMinRating() {
+        LocalDateTime now = LocalDateTime.now();
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, now.minusDays(2));
+        warehouse.addProduct(2, "Smartphone", Category.ELECTRONICS, 9, now.minusDays(3));
+        warehouse.addProduct(3, "Tablet", Category.ELECTRONICS, 8, now.minusDays(1));
+        warehouse.addProduct(4, "Camera", Category.ELECTRONICS, 5, now);
+        warehouse.addProduct(5, "Shirt", Category.CLOTHING, 10, now);
+
+        List<ProductRecord> products = warehouse.getProductsByMinRating(Category.ELECTRONICS, 8);
+
+        assertEquals(3, products.size());
+        assertEquals("Smartphone", products.get(0).name());
+        assertEquals("Tablet", products.get(1).name());
+        assertEquals("Laptop", products.get(2).name());
+    }
+
+    @Test
+    void testGetProductsByMinRatingAfterRatingChange() {
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+        warehouse.updateProduct(1, "Laptop", Category.ELECTRONICS, 3);
+
+        assertTrue(warehouse.getProductsByMinRating(Category.ELECTRONICS, 4).isEmpty());
+        assertEquals(1, warehouse.getProductsByMinRating(Category.ELECTRONICS, 3).size());
+    }
+
+    @Test
+    void testRatingChangesWithSameCreatedDate() {
+        LocalDateTime created = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int id = 1; id <= 1000; id++) {
+            warehouse.addProduct(id, "Product " + id, Category.BOOKS, 5, created);
+        }
+        for (int id = 1; id <= 1000; id += 2) {
+            warehouse.updateProductRating(id, 6);
+        }
+
+        assertEquals(500, warehouse.getProductsByMinRating(Category.BOOKS, 6).size());
+        assertEquals(1000, warehouse.getProductsByMinRating(Category.BOOKS, 5).size());
+        warehouse.removeProduct(2);
+        assertEquals(999, warehouse.getProductsByMinRating(Category.BOOKS, 5).size());
+    }
+
+    @Test
+    void testGetProductsByMinRatingWithInvalidRating() {
+        assertThrows(IllegalArgumentException.class, () -> warehouse.getProductsByMinRating(Category.ELECTRONICS, 0));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.getProductsByMinRating(Category.ELECTRONICS, 11));
+    }
+
+    @Test
+    void testProductsWithSameNameShareName() {
+        warehouse.addProduct(1, new String("Laptop"), Category.ELECTRONICS, 8, LocalDateTime.now());
+        warehouse.addProduct(2, new String("Laptop"), Category.ELECTRONICS, 9, LocalDateTime.now());
+
+        assertSame(warehouse.getProductById(1).get().name(), warehouse.getProductById(2).get().name());
+        assertEquals(1, warehouse.getNumberOfDistinctNames());
+    }
+
+    @Test
+    void testUpdateProductReleasesUnusedName() {
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+        warehouse.addProduct(2, "Laptop", Category.ELECTRONICS, 9, LocalDateTime.now());
+
+        warehouse.updateProduct(1, "Gaming Laptop", Category.ELECTRONICS, 8);
+        assertEquals(2, warehouse.getNumberOfDistinctNames());
+
+        warehouse.updateProduct(2, "Gaming Laptop", Category.ELECTRONICS, 9);
+        assertEquals(1, warehouse.getNumberOfDistinctNames());
+        assertEquals("Gaming Laptop", warehouse.getProductById(2).get().name());
+    }
+
+    @Test
+    void testCountsFollowUpdatedCategoryAndName() {
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+        warehouse.addProduct(2, "Lego", Category.TOYS, 7, LocalDateTime.now());
+
+        warehouse.updateProduct(1, "Novel", Category.BOOKS, 8);
+
+        assertEquals(0, warehouse.getNumberOfProductsInCategory(Category.ELECTRONICS));
+        assertEquals(1, warehouse.getNumberOfProductsInCategory(Category.BOOKS));
+        assertEquals(Set.of(Category.BOOKS, Category.TOYS), warehouse.getAllCategoriesThatHasAtLeastOneProduct());
+
+        var letters = warehouse.getNumberOfProductsStartingWithEachLetter();
+        assertEquals(1, letters.get('L'));
+        assertEquals(1, letters.get('N'));
+    }
+
+    @Test
+    void testAddProducts() {
+        LocalDateTime now = LocalDateTime.now();
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, now);
+        warehouse.addProducts(List.of(
+                new ProductRecord(2, "Smartphone", Category.ELECTRONICS, 10, now.minusHours(1), now, 0),
+                new ProductRecord(3, "Laptop", Category.ELECTRONICS, 6, now.minusHours(2), now.minusHours(2), 0),
+                new ProductRecord(4, "T-shirt", Category.CLOTHING, 10, now.minusHours(3), now.minusHours(3), 0)));
+
+        assertEquals(4, warehouse.getAllProducts().size());
+        assertEquals(3, warehouse.getNumberOfProductsInCategory(Category.ELECTRONICS));
+        assertEquals(2, warehouse.getNumberOfProductsStartingWithEachLetter().get('L'));
+        assertEquals(3, warehouse.getNumberOfDistinctNames());
+        assertEquals(1, warehouse.getAllProductsThatHasBeenModifiedSinceCreation().size());
+
+        List<ProductRecord> products = warehouse.getProductsByMinRating(Category.ELECTRONICS, 6);
+        assertEquals(List.of(2, 1, 3), products.stream().map(ProductRecord::id).toList());
+    }
+
+    @Test
+    void testAddProductsBuildsBucketsLikeSingleAdds() {
+        Warehouse oneByOne = new Warehouse();
+        LocalDateTime now = LocalDateTime.now();
+        Category[] categories = Category.values();
+        List<ProductRecord> first = new ArrayList<>();
+        List<ProductRecord> second = new ArrayList<>();
+        for (int id = 1000; id >= 1; id--) {
+            // Many products share a created date, so they are ordered by ID within it
+            LocalDateTime createdDate = now.minusMinutes(id % 37);
+            ProductRecord record = new ProductRecord(id, "Product " + id, categories[id % categories.length], 1 + id % 9, createdDate, createdDate, 0);
+            (id % 3 == 0 ? second : first).add(record);
+            oneByOne.addProduct(id, record.name(), record.category(), record.rating(), createdDate);
+        }
+        // The first load fills empty buckets and the second adds to buckets that already have products
+        warehouse.addProducts(first);
+        warehouse.addProducts(second);
+
+        for (Category category : categories) {
+            for (int rating = 1; rating <= 10; rating++) {
+                assertEquals(oneByOne.getProductsByMinRating(category, rating), warehouse.getProductsByMinRating(category, rating));
+            }
+        }
+    }
+
+    @Test
+    void testAddProductsWithExistingIdAddsNothing() {
+        LocalDateTime now = LocalDateTime.now();
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, now);
+
+        assertThrows(IllegalArgumentException.class, () -> warehouse.addProducts(List.of(
+                new ProductRecord(2, "Smartphone", Category.ELECTRONICS, 9, now, now, 0),
+                new ProductRecord(1, "Tablet", Category.ELECTRONICS, 7, now, now, 0))));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.addProducts(List.of(
+                new ProductRecord(2, "Smartphone", Category.ELECTRONICS, 9, now, now, 0),
+                new ProductRecord(2, "Tablet", Category.ELECTRONICS, 7, now, now, 0))));
+        assertEquals(1, warehouse.getAllProducts().size());
+    }
+
+    @Test
+    void testAddProductsWithInvalidRatingAddsNothing() {
+        LocalDateTime now = LocalDateTime.now();
+        assertThrows(IllegalArgumentException.class, () -> warehouse.addProducts(List.of(
+                new ProductRecord(1, "Laptop", Category.ELECTRONICS, 8, now, now, 0),
+                new ProductRecord(2, "Tablet", Category.ELECTRONICS, 11, now, now, 0))));
+        assertTrue(warehouse.getAllProducts().isEmpty());
+    }
+
+    @Test
+    void testAddProductsWithMissingFieldsAddsNothing() {
+        LocalDateTime now = LocalDateTime.now();
+        ProductRecord valid = new ProductRecord(1, "Laptop", Category.ELECTRONICS, 8, now, now, 0);
+        assertThrows(IllegalArgumentException.class, () -> warehouse.addProducts(List.of(valid,
+                new ProductRecord(2, "Tablet", null, 7, now, now, 0))));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.addProducts(List.of(valid,
+                new ProductRecord(2, "Tablet", Category.ELECTRONICS, 7, null, now, 0))));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.addProducts(List.of(valid,
+                new ProductRecord(2, "Tablet", Category.ELECTRONICS, 7, now, null, 0))));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.addProducts(List.of(valid,
+                new ProductRecord(2, null, Category.ELECTRONICS, 7, now, now, 0))));
+
+        assertTrue(warehouse.getAllProducts().isEmpty());
+        assertTrue(warehouse.getProductById(1).isEmpty());
+        warehouse.addProducts(List.of(valid));
+        assertEquals(1, warehouse.getNumberOfProductsInCategory(Category.ELECTRONICS));
+    }
+
+    @Test
+    void testUpdateProductRating() {
+        LocalDateTime now = LocalDateTime.now();
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, now);
+
+        assertTrue(warehouse.updateProductRating(1, 3));
+        ProductRecord product = warehouse.getProductById(1).get();
+        assertEquals(3, product.rating());
+        assertEquals("Laptop", product.name());
+        assertEquals(Category.ELECTRONICS, product.category());
+        assertEquals(1, product.version());
+        assertTrue(warehouse.getProductsByMinRating(Category.ELECTRONICS, 4).isEmpty());
+
+        assertFalse(warehouse.updateProductRating(999, 3));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.updateProductRating(1, 11));
+    }
+
+    @Test
+    void testUpdateProductNameAndCategory() {
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+
+        assertTrue(warehouse.updateProductName(1, "Novel"));
+        assertTrue(warehouse.updateProductCategory(1, Category.BOOKS));
+
+        ProductRecord product = warehouse.getProductById(1).get();
+        assertEquals("Novel", product.name());
+        assertEquals(Category.BOOKS, product.category());
+        assertEquals(8, product.rating());
+        assertEquals(1, warehouse.getNumberOfProductsInCategory(Category.BOOKS));
+        assertEquals(1, warehouse.getNumberOfProductsStartingWithEachLetter().get('N'));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.updateProductName(1, " "));
+    }
+
+    @Test
+    void testUpdateWithNullCategoryOrInvalidIdChangesNothing() {
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+
+        assertThrows(IllegalArgumentException.class, () -> warehouse.updateProductCategory(1, null));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.updateProduct(1, "Novel", null, 5));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.updateProductName(0, "Novel"));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.updateProductCategory(-1, Category.BOOKS));
+        assertThrows(IllegalArgumentException.class, () -> warehouse.updateProductRating(0, 5));
+
+        ProductRecord product = warehouse.getProductById(1).get();
+        assertEquals(Category.ELECTRONICS, product.category());
+        assertEquals("Laptop", product.name());
+        assertEquals(0, product.version());
+        assertEquals(1, warehouse.getNumberOfProductsInCategory(Category.ELECTRONICS));
+    }
+
+    @Test
+    void testPatchProduct() {
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+
+        assertThrows(IllegalArgumentException.class, () -> warehouse.patchProduct(1, null, "Novel", Category.BOOKS, 11));
+        assertEquals(0, warehouse.getProductById(1).get().version());
+        assertTrue(warehouse.patchProduct(1, null, "Novel", null, 6));
+        assertFalse(warehouse.patchProduct(1, 0L, null, Category.BOOKS, null));
+        assertTrue(warehouse.patchProduct(1, 1L, null, Category.BOOKS, null));
+        assertFalse(warehouse.patchProduct(2, null, null, null, null));
+
+        ProductRecord product = warehouse.getProductById(1).get();
+        assertEquals("Novel", product.name());
+        assertEquals(Category.BOOKS, product.category());
+        assertEquals(6, product.rating());
+        assertEquals(2, product.version());
+        assertEquals(1, warehouse.getNumberOfProductsInCategory(Category.BOOKS));
+    }
+
+    @Test
+    void testCompareAndSetProductRating() {
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+        long version = warehouse.getProductById(1).get().version();
+
+        assertTrue(warehouse.compareAndSetProductRating(1, version, 9));
+        assertFalse(warehouse.compareAndSetProductRating(1, version, 5));
+        assertEquals(9, warehouse.getProductById(1).get().rating());
+        assertFalse(warehouse.compareAndSetProductRating(999, 0, 5));
+    }
+
+    @Test
+    void testUpdateProductCountsAsOneModification() {
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+        warehouse.updateProduct(1, "Gaming Laptop", Category.ELECTRONICS, 9);
+        assertEquals(1, warehouse.getProductById(1).get().version());
+    }
+
+    @Test
+    void testRemoveProduct() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 10, now);
+        warehouse.addProduct(2, "Shirt", Category.CLOTHING, 7, now);
+        Thread.sleep(10);
+        warehouse.updateProduct(1, "Laptop", Category.ELECTRONICS, 10);
+
+        assertTrue(warehouse.removeProduct(1));
+        assertFalse(warehouse.removeProduct(1));
+
+        assertTrue(warehouse.getProductById(1).isEmpty());
+        assertEquals(1, warehouse.getAllProducts().size());
+        assertTrue(warehouse.getAllProductsByCategorySortedByProductName(Category.ELECTRONICS).isEmpty());
+        assertTrue(warehouse.getAllProductsCreatedAfterASpecificDate(now.minusDays(1)).stream().noneMatch(p -> p.id() == 1));
+        assertTrue(warehouse.getAllProductsThatHasBeenModifiedSinceCreation().isEmpty());
+        assertTrue(warehouse.getProductsByMinRating(Category.ELECTRONICS, 1).isEmpty());
+        assertEquals(0, warehouse.getNumberOfProductsInCategory(Category.ELECTRONICS));
+        assertEquals(Set.of(Category.CLOTHING), warehouse.getAllCategoriesThatHasAtLeastOneProduct());
+        assertFalse(warehouse.getNumberOfProductsStartingWithEachLetter().containsKey('L'));
+        assertFalse(warehouse.updateProductRating(1, 5));
+    }
+
+    @Test
+    void testRemovedProductIdCanBeReused() {
+        warehouse.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+        warehouse.removeProduct(1);
+
+        assertDoesNotThrow(() -> warehouse.checkIfProductIdExists(1));
+        warehouse.addProduct(1, "Tablet", Category.ELECTRONICS, 6, LocalDateTime.now());
+
+        List<ProductRecord> products = warehouse.getAllProducts();
+        assertEquals(1, products.size());
+        assertEquals("Tablet", products.get(0).name());
+    }
+
+    @Test
+    void testRemoveProductsCompactsTombstones() {
+        for (int id = 1; id <= 4000; id++) {
+            warehouse.addProduct(id, "Product " + id, Category.BOOKS, 5, LocalDateTime.now());
+        }
+        warehouse.removeProduct(1);
+        assertEquals(1, warehouse.getNumberOfTombstones());
+
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 2; id <= 1100; id++) {
+            ids.add(id);
+        }
+        ids.add(5000);
+        assertEquals(1099, warehouse.removeProducts(ids));
+
+        assertEquals(0, warehouse.getNumberOfTombstones());
+        assertEquals(2900, warehouse.getAllProducts().size());
+        assertEquals(2900, warehouse.getNumberOfProductsInCategory(Category.BOOKS));
+        assertEquals(2900, warehouse.getNumberOfDistinctNames());
+    }
+
+    @Test
+    void testConcurrentCompareAndSetProductRating() throws Exception {
+        MutationLog mutationLog = new MutationLog();
+        WarehouseService service = new WarehouseService(mutationLog);
+        int products = 8;
+        for (int id = 1; id <= products; id++) {
+            service.addProduct(id, "Product " + id, Category.values()[id % 4], 5, LocalDateTime.now());
+        }
+        int threads = 8;
+        int[][] successes = new int[threads][products + 1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int[] mine = successes[t];
+            workers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    int id = 1 + i % products;
+                    long version = service.getProductById(id).orElseThrow().version();
+                    if (service.compareAndSetProductRating(id, version, 1 + (i * 7 + id) % 10)) {
+                        mine[id]++;
+                    }
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        List<MutationLog.Entry> entries = mutationLog.readAfter(0, Integer.MAX_VALUE, 0);
+        for (int id = 1; id <= products; id++) {
+            int applied = 0;
+            for (int[] mine : successes) {
+                applied += mine[id];
+            }
+            ProductRecord product = service.getProductById(id).orElseThrow();
+            assertEquals(applied, product.version());
+            int productId = id;
+            assertEquals(product, entries.stream().filter(e -> e.product().id() == productId).reduce((first, second) -> second).orElseThrow().product());
+            assertEquals(1, service.getProductsByMinRating(product.category(), 1).stream().filter(r -> r.id() == productId).count());
+            assertEquals(1, service.getProductsByMinRating(product.category(), product.rating()).stream().filter(r -> r.id() == productId).count());
+            if (product.rating() < 10) {
+                assertEquals(0, service.getProductsByMinRating(product.category(), product.rating() + 1).stream().filter(r -> r.id() == productId).count());
+            }
+        }
+    }
+
+    @Test
+    void testTieredWarehouseAnswersLikeInMemoryWarehouse(@TempDir Path directory) {
+        Warehouse tiered = new Warehouse(directory.resolve("spill.bin"), 10);
+        LocalDateTime now = LocalDateTime.now();
+        Category[] categories = Category.values();
+        List<ProductRecord> productRecords = new ArrayList<>();
+        for (int id = 1; id <= 200; id++) {
+            LocalDateTime createdDate = id % 2 == 0 ? now.minusMinutes(id) : now.minusDays(id);
+            productRecords.add(new ProductRecord(id, "Product " + (id % 30), categories[id % categories.length], 1 + id % 10, createdDate, createdDate, 0));
+        }
+        warehouse.addProducts(productRecords);
+        tiered.addProducts(productRecords);
+        for (int i = 1; i <= 300; i++) {
+            int id = 1 + (i * 37) % 200;
+            for (Warehouse w : List.of(warehouse, tiered)) {
+                switch (i % 4) {
+                    case 0 -> w.updateProductRating(id, 1 + i % 10);
+                    case 1 -> w.updateProductCategory(id, categories[i % categories.length]);
+                    case 2 -> w.updateProductName(id, "Renamed " + (i % 7));
+                    default -> w.getProductById(id);
+                }
+            }
+        }
+        for (int id = 5; id <= 200; id += 5) {
+            assertTrue(warehouse.removeProduct(id));
+            assertTrue(tiered.removeProduct(id));
+        }
+
+        assertTrue(tiered.getNumberOfResidentProducts() <= 10);
+        assertTrue(tiered.getNumberOfEvictions() > 0);
+        assertEquals(stripDates(warehouse.getAllProducts()), stripDates(tiered.getAllProducts()));
+        for (int id = 1; id <= 200; id++) {
+            assertEquals(warehouse.getProductById(id).map(r -> stripDates(List.of(r))),
+                    tiered.getProductById(id).map(r -> stripDates(List.of(r))));
+        }
+        for (Category category : categories) {
+            assertEquals(stripDates(warehouse.getAllProductsByCategorySortedByProductName(category)),
+                    stripDates(tiered.getAllProductsByCategorySortedByProductName(category)));
+            assertEquals(warehouse.getNumberOfProductsInCategory(category), tiered.getNumberOfProductsInCategory(category));
+            for (int rating = 1; rating <= 10; rating++) {
+                assertEquals(stripDates(warehouse.getProductsByMinRating(category, rating)),
+                        stripDates(tiered.getProductsByMinRating(category, rating)));
+            }
+        }
+        assertEquals(stripDates(warehouse.getAllProductsWithMaxRatingCreatedThisMonthSortedByDate()),
+                stripDates(tiered.getAllProductsWithMaxRatingCreatedThisMonthSortedByDate()));
+        assertEquals(warehouse.getNumberOfProductsStartingWithEachLetter(), tiered.getNumberOfProductsStartingWithEachLetter());
+        assertEquals(warehouse.getAllCategoriesThatHasAtLeastOneProduct(), tiered.getAllCategoriesThatHasAtLeastOneProduct());
+        assertEquals(stripDates(warehouse.getAllProductsThatHasBeenModifiedSinceCreation()),
+                stripDates(tiered.getAllProductsThatHasBeenModifiedSinceCreation()));
+        tiered.close();
+    }
+
+    @Test
+    void testTieredWarehouseKeepsUpdatesOfEvictedProducts(@TempDir Path directory) {
+        Warehouse tiered = new Warehouse(directory.resolve("spill.bin"), 2);
+        LocalDateTime now = LocalDateTime.now();
+        for (int id = 1; id <= 5; id++) {
+            tiered.addProduct(id, "Product " + id, Category.BOOKS, 5, now);
+        }
+        assertEquals(2, tiered.getNumberOfResidentProducts());
+        assertTrue(tiered.updateProduct(1, "Atlas", Category.CLOTHING, 9));
+        for (int id = 2; id <= 5; id++) {
+            tiered.getProductById(id);
+        }
+
+        ProductRecord product = tiered.getProductById(1).orElseThrow();
+        assertEquals("Atlas", product.name());
+        assertEquals(Category.CLOTHING, product.category());
+        assertEquals(9, product.rating());
+        assertEquals(1, product.version());
+        assertTrue(tiered.getNumberOfMisses() > 0);
+        assertTrue(tiered.getNumberOfHits() + tiered.getNumberOfMisses() >= 6);
+        assertTrue(tiered.getNumberOfResidentProducts() <= 2);
+        tiered.close();
+    }
+
+    @Test
+    void testRemoveSpilledProduct(@TempDir Path directory) {
+        Warehouse tiered = new Warehouse(directory.resolve("spill.bin"), 1);
+        tiered.addProduct(1, "Laptop", Category.ELECTRONICS, 8, LocalDateTime.now());
+        tiered.addProduct(2, "Shirt", Category.CLOTHING, 7, LocalDateTime.now());
+
+        assertTrue(tiered.removeProduct(1));
+        assertFalse(tiered.getProductById(1).isPresent());
+        assertEquals(0, tiered.getNumberOfProductsInCategory(Category.ELECTRONICS));
+        assertEquals(List.of(2), tiered.getAllProducts().stream().map(ProductRecord::id).toList());
+        assertEquals(1, tiered.getNumberOfDistinctNames());
+        tiered.addProduct(1, "Camera", Category.ELECTRONICS, 6, LocalDateTime.now());
+        assertEquals("Camera", tiered.getProductById(1).orElseThrow().name());
+        tiered.close();
+    }
+
+    @Test
+    void testSpillFileIsCompactedAndDeletedOnClose(@TempDir Path directory) {
+        Path spillFile = directory.resolve("spill.bin");
+        Warehouse tiered = new Warehouse(spillFile, 1);
+        for (int id = 1; id <= 100; id++) {
+            tiered.addProduct(id, "Product " + id, Category.TOYS, 5, LocalDateTime.now());
+        }
+        for (int i = 0; i < 50_000; i++) {
+            tiered.updateProductRating(1 + i % 100, 1 + i % 10);
+        }
+
+        assertTrue(tiered.getSpillFileSize() < 1 << 20);
+        assertEquals(1 + 49_999 % 10, tiered.getProductById(100).orElseThrow().rating());
+        assertEquals(500, tiered.getProductById(1).orElseThrow().version());
+        assertTrue(Files.exists(spillFile));
+        tiered.close();
+        assertFalse(Files.exists(spillFile));
+    }
+
+    @Test
+    void testTieredWarehouseNeedsRoomForOneProduct(@TempDir Path directory) {
+        assertThrows(IllegalArgumentException.class, () -> new Warehouse(directory.resolve("spill.bin"), 0));
+    }
+
+    // Modified dates depend on when the change ran, so warehouses changed one after the other are compared without them
+    private static List<String> stripDates(List<ProductRecord> productRecords) {
+        return productRecords.stream()
+                .map(r -> r.id() + " " + r.name() + " " + r.category() + " " + r.rating() + " " + r.createdDate() + " " + r.version())
+                .toList();
+    }
+}
@@ -0,0 +1,97 @@
+// WorkloadRunnerTest contains tests for the WorkloadRunner and ZipfianGenerator classes.
+
+
+package org.example.service;
+
+import org.example.entities.Category;
+import org.example.entities.ProductRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkloadRunnerTest {
+    // The runs are checked through what run returns, so their reports are thrown away
+    private static final PrintStream NO_REPORT = new PrintStream(OutputStream.nullOutputStream());
+
+    @Test
+    void testSameSeedGeneratesSameCatalog() {
+        Map<String, String> options = Map.of("products", "500", "names", "20", "seed", "7");
+        List<ProductRecord> first = new WorkloadRunner(options).generateCatalog();
+        List<ProductRecord> second = new WorkloadRunner(options).generateCatalog();
+        List<ProductRecord> otherSeed = new WorkloadRunner(Map.of("products", "500", "names", "20", "seed", "8")).generateCatalog();
+
+        assertEquals(500, first.size());
+        assertEquals(first, second);
+        assertNotEquals(first, otherSeed);
+        assertTrue(first.stream().map(ProductRecord::name).distinct().count() <= 20);
+    }
+
+    @Test
+    void testCategoryWeights() {
+        List<ProductRecord> catalog = new WorkloadRunner(Map.of("products", "1000", "category-weights", "0,0,1,0")).generateCatalog();
+        assertTrue(catalog.stream().allMatch(p -> p.category() == Category.BOOKS));
+    }
+
+    @Test
+    void testZipfianGeneratorFavorsLowRanks() {
+        ZipfianGenerator generator = new ZipfianGenerator(1000, 0.99);
+        SplittableRandom random = new SplittableRandom(1);
+        int[] counts = new int[1000];
+        for (int i = 0; i < 100_000; i++) {
+            counts[(int) generator.next(random)]++;
+        }
+        assertTrue(counts[0] > counts[1]);
+        assertTrue(counts[1] > counts[100]);
+        assertTrue(counts[0] > 10 * counts[500]);
+    }
+
+    @Test
+    void testSameSeedRunsSameOperations() throws Exception {
+        Map<String, String> options = Map.of("products", "1000", "operations", "2000", "threads", "2", "seed", "3",
+                "mix", "get=50,update=20,add=10,list=10,count=10");
+        Map<String, Integer> first = new WorkloadRunner(options, NO_REPORT).run();
+        Map<String, Integer> second = new WorkloadRunner(options, NO_REPORT).run();
+
+        assertEquals(first, second);
+        assertEquals(2000, first.values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(Set.of("add", "count", "get", "list", "update"), first.keySet());
+    }
+
+    @Test
+    void testReplayTraceKeepsOrderPerProduct(@TempDir Path directory) throws Exception {
+        StringBuilder trace = new StringBuilder("# every product is added, read, rated and half of them removed and read again\n");
+        for (int id = 1; id <= 40; id++) {
+            trace.append("add ").append(id).append(" BOOKS 5 Novel ").append(id).append('\n');
+        }
+        for (int id = 1; id <= 40; id++) {
+            trace.append("get ").append(id).append('\n');
+            trace.append("update-rating ").append(id).append(" 9\n");
+            if (id % 2 == 0) {
+                trace.append("remove ").append(id).append('\n');
+            }
+            trace.append("get ").append(id).append('\n');
+        }
+        Path file = directory.resolve("trace.txt");
+        Files.writeString(file, trace);
+
+        Map<String, String> options = Map.of("products", "0", "trace", file.toString(), "threads", "4");
+        Map<String, Integer> expected = Map.of("add", 40, "get", 60, "get (failed)", 20, "update-rating", 40, "remove", 20);
+        for (int run = 0; run < 3; run++) {
+            WorkloadRunner runner = new WorkloadRunner(options, NO_REPORT);
+            assertEquals(expected, runner.run());
+            List<ProductRecord> products = runner.getWarehouseService().getAllProducts();
+            assertEquals(20, products.size());
+            assertTrue(products.stream().allMatch(p -> p.id() % 2 == 1 && p.rating() == 9));
+        }
+    }
+}